@@ -0,0 +1,149 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends log records over loopback to a running {@link SLF4FxServer} and
+ * waits until its sink has received them. Every JMH thread is one client
+ * with its own connection and applicationId, so run with {@code -t N} for
+ * N synthetic clients.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EndToEndBenchmark {
+    static final int BATCH = 100;
+    static final int PORT = 18999;
+
+    /**
+     * Counts received records per applicationId.
+     */
+    static class CountingSink implements LogSink {
+        final ConcurrentMap<String, AtomicLong> received = new ConcurrentHashMap<>();
+
+        AtomicLong counter(String applicationId) {
+            AtomicLong counter = new AtomicLong();
+            AtomicLong existing = received.putIfAbsent(applicationId, counter);
+            return existing != null ? existing : counter;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void write(List<LogEntry> entries) {
+            for (LogEntry entry : entries) {
+                counter(entry.getApplicationId()).incrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"0", "2"})
+        public int dispatchThreads;
+
+        @Param({"2"})
+        public int workersCount;
+
+        final CountingSink sink = new CountingSink();
+        final AtomicInteger clients = new AtomicInteger();
+        SLF4FxServer server;
+
+        @Setup(Level.Trial)
+        public void start() {
+            server = new SLF4FxServer();
+            server.setDefaultLocalAddress(new InetSocketAddress("127.0.0.1", PORT));
+            server.setWorkersCount(workersCount);
+            server.setDispatchThreads(dispatchThreads);
+            server.setLogSink(sink);
+            server.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws InterruptedException {
+            server.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        Socket socket;
+        OutputStream out;
+        byte[] batch;
+        AtomicLong received;
+        long sent;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            String applicationId = "client" + server.clients.incrementAndGet();
+            received = server.sink.counter(applicationId);
+            socket = new Socket("127.0.0.1", PORT);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+
+            out.write(toArray(Frames.accessRequest(Unpooled.buffer(), applicationId, "secret")));
+            InputStream in = socket.getInputStream();
+            if (in.read() != 2 || in.read() != 1)
+                throw new IOException("Access not granted");
+
+            ByteBuf records = Unpooled.buffer();
+            for (int i = 0; i < BATCH; i++) {
+                Frames.logRecord(records, "com.example.module" + (i % 16) + ".View", i % 4, "click " + i);
+            }
+            batch = toArray(records);
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            socket.close();
+        }
+
+        private static byte[] toArray(ByteBuf buffer) {
+            byte[] bytes = new byte[buffer.readableBytes()];
+            buffer.readBytes(bytes);
+            buffer.release();
+            return bytes;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void ingest(Client client) throws IOException {
+        client.out.write(client.batch);
+        client.sent += BATCH;
+        while (client.received.get() < client.sent) {
+            Thread.yield();
+        }
+    }
+}
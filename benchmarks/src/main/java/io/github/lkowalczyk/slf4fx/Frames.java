@@ -0,0 +1,54 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Encodes client messages the way the Flex client does.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class Frames {
+    static final byte[] POLICY_FILE_REQUEST = "<policy-file-request/>\0".getBytes(CharsetUtil.US_ASCII);
+
+    private Frames() {
+    }
+
+    static void writeUTF(ByteBuf out, String value) {
+        byte[] bytes = value.getBytes(CharsetUtil.UTF_8);
+        out.writeShort(bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    static ByteBuf accessRequest(ByteBuf out, String applicationId, String secret) {
+        out.writeByte(1);
+        writeUTF(out, applicationId);
+        writeUTF(out, secret);
+        return out;
+    }
+
+    static ByteBuf logRecord(ByteBuf out, String category, int level, String message) {
+        out.writeByte(3);
+        writeUTF(out, category);
+        out.writeInt(level);
+        writeUTF(out, message);
+        return out;
+    }
+
+    /**
+     * A realistic session: a policy file request, an access request and
+     * {@code records} log records of varying categories, levels and lengths.
+     */
+    static ByteBuf session(int records) {
+        ByteBuf out = Unpooled.buffer();
+        out.writeBytes(POLICY_FILE_REQUEST);
+        accessRequest(out, "benchmark", "secret");
+        for (int i = 0; i < records; i++) {
+            logRecord(out, "com.example.module" + (i % 16) + ".View", i % 4,
+                    i % 10 == 0 ? "Loaded " + i + " items in " + (i * 7 % 1000) + " ms from https://example.com/api/items?page=" + i
+                            : "click " + i);
+        }
+        return out;
+    }
+}
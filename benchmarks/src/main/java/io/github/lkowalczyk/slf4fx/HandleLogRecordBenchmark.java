@@ -0,0 +1,83 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Passes decoded log records through {@link MessageHandler} to SLF4J, which
+ * is bound to slf4j-nop, so that only the server's own overhead is measured.
+ * {@link #handle()} reuses the same records, while {@link #decodeAndHandle()}
+ * decodes them for every read, taking records and entries from their pools
+ * and returning them once written, like a live connection.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HandleLogRecordBenchmark {
+    static final int RECORDS = 64;
+
+    private final LogRecord[] records = new LogRecord[RECORDS];
+    private ByteBuf frames;
+    private EmbeddedChannel channel;
+
+    @Setup
+    public void setUp() throws Exception {
+        for (int i = 0; i < RECORDS; i++) {
+            ByteBuf frame = Frames.logRecord(Unpooled.buffer(), "com.example.module" + (i % 16) + ".View", i % 4,
+                    "click " + i);
+            records[i] = (LogRecord) new LogRecord().tryDecode(frame);
+        }
+        frames = Unpooled.buffer();
+        for (int i = 0; i < RECORDS; i++) {
+            Frames.logRecord(frames, "com.example.module" + (i % 16) + ".View", i % 4, "click " + i);
+        }
+
+        ServerMetrics metrics = new ServerMetrics();
+        AtomicReference<ServerConfig> config = new AtomicReference<>(ServerConfig.INITIAL);
+        MessageHandler handler = new MessageHandler(new Slf4jLogSink("slf4fx", 4096), null, metrics, null, config,
+                Collections.<String, Object>emptyMap());
+        channel = new EmbeddedChannel(new InboundMessageDecoder(metrics, FrameLimits.DEFAULT, config), handler);
+        channel.writeInbound(Frames.accessRequest(Unpooled.buffer(), "benchmark", "secret"));
+        channel.readOutbound();
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finish();
+        frames.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void handle() {
+        // one read delivering RECORDS records, followed by channelReadComplete
+        for (LogRecord record : records) {
+            channel.pipeline().fireChannelRead(record.retain());
+        }
+        channel.pipeline().fireChannelReadComplete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void decodeAndHandle() {
+        // one read of RECORDS frames, decoded into pooled records
+        channel.writeInbound(frames.duplicate().retain());
+    }
+}
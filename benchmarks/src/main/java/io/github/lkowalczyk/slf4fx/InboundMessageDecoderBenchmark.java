@@ -0,0 +1,86 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a session of {@value #RECORDS} log records fed either as one
+ * buffer or in fragments, the way TCP delivers them to a busy server, with
+ * the tag-dispatching {@link InboundMessageDecoder} or, for comparison, the
+ * {@link LegacyInboundMessageDecoder try-each-message} loop it replaced.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InboundMessageDecoderBenchmark {
+    static final int RECORDS = 1000;
+
+    /**
+     * Fragment size in bytes, 0 feeds the whole session at once.
+     */
+    @Param({"0", "1460", "37"})
+    public int fragment;
+
+    @Param({"table", "legacy"})
+    public String decoder;
+
+    private ByteBuf session;
+    private ByteBuf[] fragments;
+    private EmbeddedChannel channel;
+
+    @Setup
+    public void setUp() {
+        session = Frames.session(RECORDS);
+        if (fragment > 0) {
+            int count = (session.readableBytes() + fragment - 1) / fragment;
+            fragments = new ByteBuf[count];
+            for (int i = 0; i < count; i++) {
+                int index = i * fragment;
+                fragments[i] = session.slice(index, Math.min(fragment, session.readableBytes() - index));
+            }
+        }
+        channel = new EmbeddedChannel("legacy".equals(decoder)
+                ? new LegacyInboundMessageDecoder() : new InboundMessageDecoder());
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finish();
+        session.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void decode(Blackhole blackhole) {
+        if (fragments == null) {
+            channel.writeInbound(session.duplicate().retain());
+        }
+        else {
+            for (ByteBuf f : fragments) {
+                channel.writeInbound(f.duplicate().retain());
+            }
+        }
+        Object message;
+        while ((message = channel.readInbound()) != null) {
+            blackhole.consume(message);
+            // records hold on to the cumulation until released
+            ReferenceCountUtil.release(message);
+        }
+    }
+}
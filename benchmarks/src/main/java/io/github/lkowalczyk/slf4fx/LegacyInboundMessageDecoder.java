@@ -0,0 +1,49 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.AccessRequest;
+import io.github.lkowalczyk.slf4fx.message.BufferUnderrunException;
+import io.github.lkowalczyk.slf4fx.message.InboundMessage;
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.github.lkowalczyk.slf4fx.message.PolicyFileRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.util.List;
+
+/**
+ * The decoding loop {@link InboundMessageDecoder} replaced, kept as the
+ * baseline of {@link InboundMessageDecoderBenchmark}: a new message of each
+ * type is tried in turn until one matches, and a partial frame is only
+ * detected by the underrun of a decoding attempt. The messages themselves
+ * are today's, so underruns no longer fill in stack traces and the
+ * comparison understates the original cost.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+class LegacyInboundMessageDecoder extends ByteToMessageDecoder {
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (!in.isReadable()) {
+            return;
+        }
+        try {
+            InboundMessage message;
+            if ((message = new LogRecord().tryDecode(in)) != null) {
+                out.add(message);
+            }
+            else if ((message = new AccessRequest().tryDecode(in)) != null) {
+                out.add(message);
+            }
+            else if ((message = new PolicyFileRequest().tryDecode(in)) != null) {
+                out.add(message);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown message type: " + in.getByte(in.readerIndex()));
+            }
+        }
+        catch (BufferUnderrunException e) {
+            // wait for more data
+        }
+    }
+}
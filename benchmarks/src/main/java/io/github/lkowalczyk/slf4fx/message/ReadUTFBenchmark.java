@@ -0,0 +1,56 @@
+package io.github.lkowalczyk.slf4fx.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a single string the way {@link InboundMessage#readUTF()} does.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReadUTFBenchmark {
+    @Param({"ascii", "multibyte", "malformed"})
+    public String content;
+
+    @Param({"16", "256"})
+    public int length;
+
+    @Param({"heap", "direct"})
+    public String buffer;
+
+    private ByteBuf bytes;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        String unit = "ascii".equals(content) ? "com.example.View" : "Zażółć gęślą jaźń";
+        while (sb.length() < length) {
+            sb.append(unit);
+        }
+        byte[] encoded = sb.substring(0, length).getBytes(CharsetUtil.UTF_8);
+        if ("malformed".equals(content)) {
+            encoded[encoded.length / 2] = (byte) 0xff;
+        }
+        bytes = "direct".equals(buffer) ? Unpooled.directBuffer(encoded.length) : Unpooled.buffer(encoded.length);
+        bytes.writeBytes(encoded);
+    }
+
+    @Benchmark
+    public String decode() {
+        return UTF8Decoder.decode(bytes, bytes.readerIndex(), bytes.readableBytes());
+    }
+}
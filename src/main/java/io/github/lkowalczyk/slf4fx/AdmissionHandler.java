@@ -0,0 +1,152 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sheds connections on the listening channel, before they are registered
+ * with a worker and get a pipeline. An accepted channel exceeding the
+ * number of connections, the number of connections from its address or
+ * the accept rate is closed right away and counted as rejected. Shareable
+ * among the listening channels of several acceptors.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+@ChannelHandler.Sharable
+class AdmissionHandler extends ChannelInboundHandlerAdapter {
+    private final Logger log = LoggerFactory.getLogger(AdmissionHandler.class);
+    private final ServerMetrics metrics;
+    private final int maxConnections;
+    private final int maxConnectionsPerAddress;
+    private final TokenBucket acceptRate;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Map<InetAddress, Integer> connectionsByAddress = new HashMap<>();
+
+    /**
+     * @param metrics                  Counter of rejected connections.
+     * @param maxConnections           Maximum number of open connections, 0 for no limit.
+     * @param maxConnectionsPerAddress Maximum number of open connections from one
+     *                                 address, 0 for no limit.
+     * @param acceptRate               Limit of the accept rate or null for none.
+     */
+    AdmissionHandler(ServerMetrics metrics, int maxConnections, int maxConnectionsPerAddress, RateLimit acceptRate) {
+        this.metrics = metrics;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+        this.acceptRate = acceptRate != null ? new TokenBucket(null, acceptRate) : null;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Channel child = (Channel) msg;
+        InetAddress address = maxConnectionsPerAddress > 0 ? address(child.remoteAddress()) : null;
+        String reason = takeSlot(address);
+        // a token is only taken for a connection that fits in
+        if (reason == null && acceptRate != null && !acceptRate.tryAcquire()) {
+            giveBackSlot(address);
+            reason = "accept rate exceeded";
+        }
+        if (reason != null) {
+            metrics.connectionRejected();
+            log.debug("Rejecting {}: {}", child.remoteAddress(), reason);
+            child.unsafe().closeForcibly();
+            return;
+        }
+        Slot slot = null;
+        if (maxConnections > 0 || address != null) {
+            slot = new Slot(address);
+            child.closeFuture().addListener(slot);
+        }
+        ctx.fireChannelRead(msg);
+        // a channel failing to register is closed without completing its close future
+        if (slot != null && !child.isOpen())
+            slot.release();
+    }
+
+    /**
+     * Takes up a connection slot for a channel from the address.
+     *
+     * @param address Remote address or null if it is not limited.
+     * @return null if there is room for the channel, otherwise why there is not.
+     */
+    private String takeSlot(InetAddress address) {
+        if (maxConnections > 0 && connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            return "too many connections";
+        }
+        if (address != null && !acquire(address)) {
+            if (maxConnections > 0)
+                connections.decrementAndGet();
+            return "too many connections from the address";
+        }
+        return null;
+    }
+
+    private void giveBackSlot(InetAddress address) {
+        if (maxConnections > 0)
+            connections.decrementAndGet();
+        if (address != null)
+            release(address);
+    }
+
+    private boolean acquire(InetAddress address) {
+        synchronized (connectionsByAddress) {
+            Integer count = connectionsByAddress.get(address);
+            int next = count != null ? count + 1 : 1;
+            if (next > maxConnectionsPerAddress)
+                return false;
+            connectionsByAddress.put(address, next);
+            return true;
+        }
+    }
+
+    private void release(InetAddress address) {
+        synchronized (connectionsByAddress) {
+            Integer count = connectionsByAddress.get(address);
+            if (count == null || count <= 1)
+                connectionsByAddress.remove(address);
+            else
+                connectionsByAddress.put(address, count - 1);
+        }
+    }
+
+    private static InetAddress address(SocketAddress remoteAddress) {
+        return remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress) remoteAddress).getAddress() : null;
+    }
+
+    /**
+     * Connection slot of an admitted channel, given back once when it closes.
+     */
+    private final class Slot implements ChannelFutureListener {
+        private final InetAddress address;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Slot(InetAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            release();
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true))
+                giveBackSlot(address);
+        }
+    }
+}
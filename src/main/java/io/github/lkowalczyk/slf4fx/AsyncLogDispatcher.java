@@ -0,0 +1,218 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands log records over from the I/O threads to dedicated consumer threads
+ * which write them to the {@link LogSink} in batches, so that a slow sink
+ * does not stall the event loops. An instance is shareable among pipelines.
+ * <p/>
+ * Each consumer thread drains its own lock-free queue. Records of one
+ * application always go to the same queue which keeps them in order.
+ * The queue capacity is enforced per consumer thread according to the
+ * {@link OverflowPolicy}.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+class AsyncLogDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(AsyncLogDispatcher.class);
+
+    static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final LogSink sink;
+    private final ServerMetrics metrics;
+    private final OverflowPolicy overflowPolicy;
+    private final int capacity;
+    private final Lane[] lanes;
+    private final StripedCounter dropped = new StripedCounter();
+    private volatile boolean running;
+
+    /**
+     * @param threads  Number of consumer threads, larger than 0.
+     * @param capacity Maximum number of records queued for each consumer thread.
+     */
+    AsyncLogDispatcher(LogSink sink, ServerMetrics metrics, int threads, int capacity, OverflowPolicy overflowPolicy) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be larger than 0 (" + threads + ")");
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be larger than 0 (" + capacity + ")");
+        if (overflowPolicy == null)
+            throw new NullPointerException("overflowPolicy");
+        this.sink = sink;
+        this.metrics = metrics;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.lanes = new Lane[threads];
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = new Lane(i);
+        }
+    }
+
+    public void start() {
+        running = true;
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Stops the consumer threads after they have forwarded all queued records.
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+        }
+        for (Lane lane : lanes) {
+            lane.thread.join();
+        }
+    }
+
+    /**
+     * Queues a record for forwarding. Called on the I/O thread of the channel.
+     * The message of a queued record is decoded here, so that the record no
+     * longer holds on to the receive buffer of the channel while queued.
+     */
+    public void dispatch(Channel channel, LogEntry entry) {
+        Lane lane = lanes[(entry.getApplicationId().hashCode() & 0x7fffffff) % lanes.length];
+        if (lane.size.get() >= capacity && !makeRoom(lane, channel, entry.getRecord())) {
+            dropped.increment();
+            entry.release();
+            return;
+        }
+        entry.getRecord().decodeMessage();
+        lane.size.incrementAndGet();
+        lane.queue.offer(entry);
+        if (lane.parked) {
+            LockSupport.unpark(lane.thread);
+        }
+    }
+
+    /**
+     * Applies the overflow policy to a full queue.
+     *
+     * @return false if the new record should be discarded.
+     */
+    private boolean makeRoom(Lane lane, Channel channel, LogRecord record) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                while (running && lane.size.get() >= capacity) {
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                }
+                return true;
+
+            case DROP_BY_LEVEL:
+                if (record.getLevel() == LogRecord.Level.DEBUG || record.getLevel() == LogRecord.Level.INFO)
+                    return false;
+                dropOldest(lane);
+                return true;
+
+            case DROP_OLDEST:
+                dropOldest(lane);
+                return true;
+
+            case BACKPRESSURE:
+            default:
+                if (channel.config().isAutoRead()) {
+                    channel.config().setAutoRead(false);
+                    lane.paused.offer(channel);
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Discards the record at the head of the queue, if there is one.
+     */
+    private void dropOldest(Lane lane) {
+        LogEntry oldest = lane.queue.poll();
+        if (oldest != null) {
+            lane.size.decrementAndGet();
+            dropped.increment();
+            oldest.release();
+        }
+    }
+
+    /**
+     * @return Number of records discarded because of a full queue.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Number of records waiting to be forwarded.
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (Lane lane : lanes) {
+            size += lane.size.get();
+        }
+        return size;
+    }
+
+    private final class Lane implements Runnable {
+        final Queue<LogEntry> queue = new ConcurrentLinkedQueue<LogEntry>();
+        final AtomicInteger size = new AtomicInteger();
+        final Queue<Channel> paused = new ConcurrentLinkedQueue<Channel>();
+        final Thread thread;
+        volatile boolean parked;
+
+        Lane(int index) {
+            thread = new Thread(this, "slf4fx-dispatch-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<LogEntry> batch = new ArrayList<LogEntry>(BATCH_SIZE);
+            while (true) {
+                LogEntry entry;
+                while (batch.size() < BATCH_SIZE && (entry = queue.poll()) != null) {
+                    batch.add(entry);
+                }
+                if (batch.isEmpty()) {
+                    if (!running)
+                        return;
+                    parked = true;
+                    if (queue.isEmpty())
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    parked = false;
+                    continue;
+                }
+
+                size.addAndGet(-batch.size());
+                metrics.recordsWritten(batch);
+                try {
+                    sink.write(batch);
+                }
+                catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                }
+                LogEntry.release(batch);
+                batch.clear();
+
+                if (!paused.isEmpty() && size.get() <= capacity / 2) {
+                    Channel channel;
+                    while ((channel = paused.poll()) != null) {
+                        channel.config().setAutoRead(true);
+                    }
+                }
+            }
+        }
+    }
+}
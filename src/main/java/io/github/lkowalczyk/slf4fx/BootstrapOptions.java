@@ -0,0 +1,74 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies bootstrap options given by name to a {@link ServerBootstrap}.
+ * <p/>
+ * Names prefixed with {@code child.} apply to accepted channels, the others
+ * to the listening channel. Both the Netty 3 bean-style names used by the
+ * original SLF4FxServer ({@code tcpNoDelay}, {@code keepAlive}, {@code backlog}...)
+ * and the Netty 4 {@link ChannelOption} constant names ({@code TCP_NODELAY},
+ * {@code SO_KEEPALIVE}, {@code SO_BACKLOG}...) are understood.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class BootstrapOptions {
+    private static final Logger log = LoggerFactory.getLogger(BootstrapOptions.class);
+    private static final String CHILD_PREFIX = "child.";
+    private static final Map<String, ChannelOption<?>> OPTIONS = new HashMap<String, ChannelOption<?>>();
+
+    static {
+        for (Field field : ChannelOption.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == ChannelOption.class) {
+                try {
+                    OPTIONS.put(field.getName(), (ChannelOption<?>) field.get(null));
+                }
+                catch (IllegalAccessException e) {
+                    throw new Error(e.getMessage(), e);
+                }
+            }
+        }
+        OPTIONS.put("backlog", ChannelOption.SO_BACKLOG);
+        OPTIONS.put("reuseAddress", ChannelOption.SO_REUSEADDR);
+        OPTIONS.put("keepAlive", ChannelOption.SO_KEEPALIVE);
+        OPTIONS.put("tcpNoDelay", ChannelOption.TCP_NODELAY);
+        OPTIONS.put("receiveBufferSize", ChannelOption.SO_RCVBUF);
+        OPTIONS.put("sendBufferSize", ChannelOption.SO_SNDBUF);
+        OPTIONS.put("soLinger", ChannelOption.SO_LINGER);
+        OPTIONS.put("trafficClass", ChannelOption.IP_TOS);
+        OPTIONS.put("connectTimeoutMillis", ChannelOption.CONNECT_TIMEOUT_MILLIS);
+    }
+
+    private BootstrapOptions() {
+    }
+
+    /**
+     * Applies the options. Unknown names are logged and ignored.
+     */
+    @SuppressWarnings("unchecked")
+    static void apply(ServerBootstrap bootstrap, Map<String, Object> options) {
+        for (Map.Entry<String, Object> entry : options.entrySet()) {
+            String name = entry.getKey();
+            boolean child = name.startsWith(CHILD_PREFIX);
+            ChannelOption<Object> option = (ChannelOption<Object>) OPTIONS.get(
+                    child ? name.substring(CHILD_PREFIX.length()) : name);
+            if (option == null) {
+                log.warn("Unknown bootstrap option {}, ignoring", name);
+                continue;
+            }
+            if (child)
+                bootstrap.childOption(option, entry.getValue());
+            else
+                bootstrap.option(option, entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.lkowalczyk.slf4fx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches the server's configuration file and has it reloaded whenever it
+ * is created or modified.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ * @see SLF4FxServer#setConfigFile(File)
+ */
+class ConfigFileWatcher implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ConfigFileWatcher.class);
+
+    private final File file;
+    private final Runnable reload;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param reload Called on the watcher thread after each change.
+     */
+    ConfigFileWatcher(File file, Runnable reload) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.reload = reload;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParentFile().toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this, "slf4fx-config-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void stop() throws InterruptedException {
+        try {
+            watchService.close();
+        }
+        catch (IOException e) {
+            log.warn("Cannot close watch service: {}", e.getMessage());
+        }
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        Path name = file.toPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context()))
+                        changed = true;
+                }
+                key.reset();
+                if (changed) {
+                    log.info("{} changed, reloading", file);
+                    reload.run();
+                }
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException e) {
+            // stopped
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.util.CharsetUtil;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable lookup of accepted applicationId-secret pairs. Only SHA-256
+ * digests of the secrets are kept and compared in constant time; an
+ * unknown applicationId is compared against a dummy digest so that it
+ * costs as much as a wrong secret. Replacing the credentials means
+ * building a new index. An instance is shareable among pipelines.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class CredentialIndex {
+    /** Prefix of secrets given as the hex encoded SHA-256 digest of the actual secret. */
+    static final String SHA256_PREFIX = "sha256:";
+
+    /** Index granting access to everyone. */
+    static final CredentialIndex OPEN = new CredentialIndex(Collections.<String, String>emptyMap());
+
+    private static final byte[] NO_DIGEST = new byte[32];
+
+    private final Map<String, byte[]> digests;
+
+    /**
+     * @param credentials applicationId-secret pairs, secrets either in plain
+     *                    text or prefixed with {@code sha256:}.
+     */
+    CredentialIndex(Map<String, String> credentials) {
+        Map<String, byte[]> digests = new HashMap<>();
+        for (Map.Entry<String, String> entry : credentials.entrySet()) {
+            String secret = entry.getValue();
+            digests.put(entry.getKey(), secret.startsWith(SHA256_PREFIX)
+                    ? parseHex(secret.substring(SHA256_PREFIX.length())) : digest(secret));
+        }
+        this.digests = digests;
+    }
+
+    /**
+     * @return true if access is granted to everyone.
+     */
+    boolean isOpen() {
+        return digests.isEmpty();
+    }
+
+    /**
+     * Checks an access request.
+     */
+    boolean verify(String applicationId, String secret) {
+        if (digests.isEmpty())
+            return true;
+        if (applicationId == null || secret == null)
+            return false;
+        byte[] actual = digest(secret);
+        byte[] expected = digests.get(applicationId);
+        // unknown applications cost as much as wrong secrets
+        return MessageDigest.isEqual(expected != null ? expected : NO_DIGEST, actual) && expected != null;
+    }
+
+    static byte[] digest(String secret) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(CharsetUtil.UTF_8));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new Error(e.getMessage(), e); // required on every Java platform
+        }
+    }
+
+    private static byte[] parseHex(String hex) {
+        if (hex.length() != 64)
+            throw new IllegalArgumentException("SHA-256 digest must have 64 hex digits (" + hex + ")");
+        byte[] bytes = new byte[32];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+                throw new IllegalArgumentException("SHA-256 digest must have 64 hex digits (" + hex + ")");
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+}
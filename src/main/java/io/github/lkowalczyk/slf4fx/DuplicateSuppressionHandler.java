@@ -0,0 +1,153 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.CharsetUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses bursts of identical log records. The first occurrence of a
+ * record is passed on right away; repeats with the same category, level and
+ * message arriving within the window are only counted and passed on as a
+ * single "repeated N times" record. Summaries of windows that are over
+ * are passed on at the end of a read, so on a connection that has gone
+ * quiet they wait for its next read or for it to close.
+ * <p/>
+ * Records are aggregated per connection: repeats sent by one application
+ * over several connections are counted separately on each of them. They
+ * are tracked in a fixed-size table keyed by a 64-bit hash, so memory does
+ * not grow with the traffic. A record evicted by a colliding one has its
+ * summary passed on early. Messages are hashed and compared as UTF-8 bytes,
+ * so repeats are never decoded; the table keeps a copy of the bytes rather
+ * than the records, which are pooled once passed on. A summary carries the
+ * receive time and sequence number of the last repeat, so it may be passed
+ * on after records with higher sequence numbers. An instance is NOT
+ * shareable among pipelines.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+class DuplicateSuppressionHandler extends ChannelInboundHandlerAdapter {
+    private static final int SLOTS = 256;
+    private static final int SLOT_SHIFT = 32 - Integer.numberOfTrailingZeros(SLOTS);
+
+    private final ServerMetrics metrics;
+    private final long windowNanos;
+    private final long[] keys = new long[SLOTS];
+    private final long[] windowStarts = new long[SLOTS];
+    private final int[] repeats = new int[SLOTS];
+    private final long[] lastReceivedNanos = new long[SLOTS];
+    private final long[] lastSequences = new long[SLOTS];
+    private final String[] categories = new String[SLOTS];
+    private final LogRecord.Level[] levels = new LogRecord.Level[SLOTS];
+    private final byte[][] messages = new byte[SLOTS][];
+    private long lastSweep = System.nanoTime();
+
+    /**
+     * @param window Aggregation window in milliseconds, larger than 0.
+     */
+    DuplicateSuppressionHandler(ServerMetrics metrics, int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("window must be larger than 0 (" + window + ")");
+        this.metrics = metrics;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        boolean emitted = false;
+        for (int i = 0; i < SLOTS; i++) {
+            emitted |= evict(ctx, i);
+        }
+        if (emitted)
+            ctx.fireChannelReadComplete();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof LogRecord)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        LogRecord record = (LogRecord) msg;
+        long now = System.nanoTime();
+        long key = key(record);
+        int slot = (int) ((key ^ (key >>> 32)) * 0x9E3779B9) >>> SLOT_SHIFT;
+        if (keys[slot] == key && now - windowStarts[slot] < windowNanos && sameAs(slot, record)) {
+            repeats[slot]++;
+            lastReceivedNanos[slot] = record.getReceivedNanos();
+            lastSequences[slot] = record.getSequence();
+            metrics.duplicateSuppressed();
+            record.release();
+            return;
+        }
+
+        evict(ctx, slot);
+        keys[slot] = key;
+        windowStarts[slot] = now;
+        categories[slot] = record.getCategory();
+        levels[slot] = record.getLevel();
+        messages[slot] = record.getMessageBytes();
+        ctx.fireChannelRead(record);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        long now = System.nanoTime();
+        if (now - lastSweep >= windowNanos) {
+            lastSweep = now;
+            for (int i = 0; i < SLOTS; i++) {
+                if (keys[i] != 0 && now - windowStarts[i] >= windowNanos)
+                    evict(ctx, i);
+            }
+        }
+        super.channelReadComplete(ctx);
+    }
+
+    /**
+     * Clears a slot, passing on the summary of its repeats if there were any.
+     *
+     * @return true if a summary was passed on.
+     */
+    private boolean evict(ChannelHandlerContext ctx, int slot) {
+        String category = categories[slot];
+        LogRecord.Level level = levels[slot];
+        byte[] message = messages[slot];
+        int count = repeats[slot];
+        keys[slot] = 0;
+        categories[slot] = null;
+        levels[slot] = null;
+        messages[slot] = null;
+        repeats[slot] = 0;
+        if (count == 0)
+            return false;
+        String text = message != null ? new String(message, CharsetUtil.UTF_8) : null;
+        LogRecord summary = new LogRecord(category, level, text
+                + " (repeated " + count + (count == 1 ? " time)" : " times)"));
+        summary.setReceived(lastReceivedNanos[slot], lastSequences[slot]);
+        ctx.fireChannelRead(summary);
+        return true;
+    }
+
+    private static long key(LogRecord record) {
+        int high = 31 * hashCode(record.getCategory()) + record.getLevel().ordinal();
+        long key = ((long) high << 32) | (record.getMessageHash() & 0xffffffffL);
+        return key != 0 ? key : 1; // 0 marks an empty slot
+    }
+
+    private static int hashCode(String s) {
+        return s != null ? s.hashCode() : 0;
+    }
+
+    private boolean sameAs(int slot, LogRecord record) {
+        return levels[slot] == record.getLevel() && equals(categories[slot], record.getCategory())
+                && record.messageEquals(messages[slot]);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
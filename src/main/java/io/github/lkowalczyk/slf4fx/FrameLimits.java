@@ -0,0 +1,48 @@
+package io.github.lkowalczyk.slf4fx;
+
+/**
+ * Size limits enforced by {@link InboundMessageDecoder}. String limits are in
+ * encoded bytes; the protocol itself does not allow more than 65535.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class FrameLimits {
+    static final int MAX_STRING_LENGTH = 0xffff;
+    /** The longest frame the protocol allows, a log record with the longest strings. */
+    static final int MAX_FRAME_LENGTH = 1 + 2 + MAX_STRING_LENGTH + 4 + 2 + MAX_STRING_LENGTH;
+
+    static final FrameLimits DEFAULT = new FrameLimits(MAX_STRING_LENGTH, MAX_STRING_LENGTH, MAX_STRING_LENGTH,
+            MAX_FRAME_LENGTH);
+
+    private final int maxCategoryLength;
+    private final int maxMessageLength;
+    private final int maxApplicationIdLength;
+    private final int maxPendingBytes;
+
+    FrameLimits(int maxCategoryLength, int maxMessageLength, int maxApplicationIdLength, int maxPendingBytes) {
+        this.maxCategoryLength = maxCategoryLength;
+        this.maxMessageLength = maxMessageLength;
+        this.maxApplicationIdLength = maxApplicationIdLength;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    public int getMaxCategoryLength() {
+        return maxCategoryLength;
+    }
+
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    public int getMaxApplicationIdLength() {
+        return maxApplicationIdLength;
+    }
+
+    /**
+     * @return Maximum number of bytes of an incomplete frame buffered while
+     * waiting for the rest of it.
+     */
+    public int getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+}
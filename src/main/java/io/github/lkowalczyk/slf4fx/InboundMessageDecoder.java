@@ -6,54 +6,418 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.github.lkowalczyk.slf4fx.message.AccessRequest;
-import io.github.lkowalczyk.slf4fx.message.BufferUnderrunException;
 import io.github.lkowalczyk.slf4fx.message.InboundMessage;
 import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.github.lkowalczyk.slf4fx.message.MalformedMessageException;
+import io.github.lkowalczyk.slf4fx.message.MessageType;
 import io.github.lkowalczyk.slf4fx.message.PolicyFileRequest;
+import io.github.lkowalczyk.slf4fx.message.StringCache;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Decodes byte sequences to high-level messages.
- * 
+ * <p>
+ * The tag byte of each message is looked at once and indexes a table of
+ * frame layouts. A single walk over the length prefixes of a frame both
+ * checks them against the limits and tells whether the whole frame is in
+ * the buffer, and a message is only parsed after that, so partial reads
+ * never go through a failed decoding attempt. The settings are read and
+ * the shared counters updated once per read rather than once per frame.
+ * <p>
+ * Bytes already decoded are discarded from the cumulation buffer every few
+ * reads, not only when a read burst is over, so that a client streaming
+ * large messages does not make the buffer grow without bound.
+ * <p>
+ * Frames breaking the {@link FrameLimits} are rejected as soon as the
+ * offending length prefix arrives, and then skipped field by field as they
+ * come in, without being buffered or decoded.
+ * <p>
+ * Log records below the {@link LevelFilter minimum level} are skipped the
+ * same way as soon as their category and level have arrived. The level
+ * applying to a category is resolved once per application, the one
+ * {@link MessageHandler#APPLICATION_ID granted} to the channel, and per
+ * change of the settings. Messages decoded up to an access request are
+ * passed on as soon as it is decoded, so that the records following it are
+ * filtered by the outcome of the request.
+ * <p>
+ * Decoded log records are {@link LogRecord#setReceived(long, long) stamped}
+ * with the time of the read they came in and a sequence number counting
+ * the records decoded on the connection.
+ * <p>
+ * Log records come from a pool and their categories from a per-channel
+ * cache, and their messages stay in the cumulation buffer until needed, so
+ * that decoding a record produces no garbage in the steady state.
+ *
  * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
  */
 class InboundMessageDecoder extends ByteToMessageDecoder
 {
-    private final Logger log = LoggerFactory.getLogger(InboundMessageDecoder.class);
+    private static final Logger log = LoggerFactory.getLogger(InboundMessageDecoder.class);
+
+    static final int DEFAULT_DISCARD_AFTER_READS = 16;
+
+    /**
+     * Layouts of the frames after the tag byte by tag, mirroring the message
+     * classes: {@link #UTF} for a string with a 16-bit length prefix,
+     * otherwise the size of a fixed field. Null for unknown tags.
+     */
+    private static final int[][] LAYOUTS = new int[256][];
+    private static final int UTF = -1;
+    /** Returned by {@link #frameLength(ByteBuf, int[], int[])} for a frame breaking the limits. */
+    private static final int OVERSIZED = -2;
+    private static final int LOG_RECORD = MessageType.LOG_RECORD.getTag();
+    private static final MessageType[] TYPES = MessageType.values();
+    static
+    {
+        LAYOUTS[LOG_RECORD] = new int[] { UTF, 4, UTF }; // category, level, message
+        LAYOUTS[MessageType.ACCESS_REQUEST.getTag()] = new int[] { UTF, UTF }; // applicationId, secret
+        // rest of "<policy-file-request/>\0"
+        LAYOUTS[MessageType.POLICY_FILE_REQUEST.getTag()] = new int[] { 22 };
+    }
+
+    private final ServerMetrics metrics;
+    private final AtomicReference<ServerConfig> config;
+    /** Limits of the fields of {@link #LAYOUTS} by tag. */
+    private final int[][] maxLengths = new int[256][];
+    private final int maxPendingBytes;
+    private final StringCache categories = new StringCache();
+    private int discardAfterReads = DEFAULT_DISCARD_AFTER_READS;
+    private int reads;
+    /** Time of the current read, shared by all records decoded from it. */
+    private long receivedNanos;
+    /** Sequence number of the last log record decoded. */
+    private long sequence;
+
+    /** Frames and bytes decoded by type ordinal, added to the metrics once per read. */
+    private final int[] framesDecoded = new int[TYPES.length];
+    private final long[] bytesDecoded = new long[TYPES.length];
+    private int recordsFiltered;
+
+    /** Layout of the frame being skipped or null. */
+    private int[] skipLayout;
+    private int skipField;
+    private int skipRemaining;
+    /** Whether an oversized frame has been logged at INFO, the rest go to DEBUG. */
+    private boolean oversizedLogged;
+
+    /** Application granted to the channel, null before access is granted. */
+    private String applicationId;
+    /** Filter {@link #levels} were resolved from, checked once per read. */
+    private LevelFilter levelFilter;
+    private LevelFilter.ApplicationLevels levels;
+
+    public InboundMessageDecoder()
+    {
+        this(new ServerMetrics(), FrameLimits.DEFAULT, new AtomicReference<>(ServerConfig.INITIAL));
+    }
+
+    /**
+     * @param metrics Counters of decoded frames and errors.
+     * @param limits Limits of string lengths and of buffered bytes.
+     * @param config Current settings holding the level filter.
+     */
+    public InboundMessageDecoder(ServerMetrics metrics, FrameLimits limits, AtomicReference<ServerConfig> config)
+    {
+        this.metrics = metrics;
+        this.config = config;
+        this.maxPendingBytes = limits.getMaxPendingBytes();
+        maxLengths[LOG_RECORD] = new int[] { limits.getMaxCategoryLength(), 0, limits.getMaxMessageLength() };
+        maxLengths[MessageType.ACCESS_REQUEST.getTag()] =
+                new int[] { limits.getMaxApplicationIdLength(), FrameLimits.MAX_STRING_LENGTH };
+        maxLengths[MessageType.POLICY_FILE_REQUEST.getTag()] = new int[] { 0 };
+        resolveLevels(config.get().getLevelFilter());
+    }
+
+    /**
+     * Sets the number of reads after which decoded bytes are discarded from
+     * the cumulation buffer. Default is 16.
+     *
+     * @param discardAfterReads number of reads, larger than 0.
+     */
+    public void setDiscardAfterReads(int discardAfterReads)
+    {
+        if (discardAfterReads < 1)
+        {
+            throw new IllegalArgumentException("discardAfterReads must be larger than 0 (" + discardAfterReads + ")");
+        }
+        this.discardAfterReads = discardAfterReads;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        receivedNanos = System.nanoTime();
+        LevelFilter filter = config.get().getLevelFilter();
+        if (filter != levelFilter)
+        {
+            resolveLevels(filter);
+        }
+        try
+        {
+            super.channelRead(ctx, msg);
+        }
+        finally
+        {
+            flushMetrics();
+        }
+        if (++reads >= discardAfterReads)
+        {
+            reads = 0;
+            ByteBuf cumulation = internalBuffer();
+            // a cumulation shared with someone else must not be touched
+            if (cumulation.refCnt() == 1)
+            {
+                cumulation.discardSomeReadBytes();
+            }
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        reads = 0;
+        super.channelReadComplete(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        try
+        {
+            super.channelInactive(ctx);
+        }
+        finally
+        {
+            flushMetrics();
+        }
+    }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (skipLayout != null && !skip(in))
+        {
+            return;
+        }
         if (!in.isReadable()) {
             return;
         }
         try
         {
-            InboundMessage message;
-            if ((message = new LogRecord().tryDecode(in)) != null)
+            int tag = in.getUnsignedByte(in.readerIndex());
+            int[] layout = LAYOUTS[tag];
+            if (layout == null)
             {
-                out.add(message);
+                throw new MalformedMessageException("Unknown message type: " + tag);
             }
-            else if ((message = new AccessRequest().tryDecode(in)) != null)
+            int length = frameLength(in, layout, maxLengths[tag]);
+            if (length == OVERSIZED || (length == InboundMessage.INCOMPLETE && in.readableBytes() > maxPendingBytes))
             {
-                out.add(message);
+                metrics.oversizedFrame();
+                if (oversizedLogged)
+                {
+                    log.debug("Skipping oversized {} from {}", MessageType.forTag(tag), ctx.channel().remoteAddress());
+                }
+                else
+                {
+                    oversizedLogged = true;
+                    log.info("Skipping oversized {} from {}, logging further ones at DEBUG", MessageType.forTag(tag),
+                            ctx.channel().remoteAddress());
+                }
+                startSkipping(in, layout);
+                return;
             }
-            else if ((message = new PolicyFileRequest().tryDecode(in)) != null)
+            if (tag == LOG_RECORD && !levels.acceptsAll() && isFiltered(in))
             {
-                out.add(message);
+                recordsFiltered++;
+                startSkipping(in, layout);
+                return;
             }
-            else {
-                throw new IllegalArgumentException("Unknown message type: " + in.getByte(0));
+            if (length == InboundMessage.INCOMPLETE)
+            {
+                return;
             }
-        }
-        catch (BufferUnderrunException e)
-        {
-            // ignored
+            MessageType type = MessageType.forTag(tag);
+            switch (type)
+            {
+                case LOG_RECORD:
+                    LogRecord record = (LogRecord) LogRecord.newInstance(categories).tryDecode(in);
+                    record.setReceived(receivedNanos, ++sequence);
+                    out.add(record);
+                    break;
+
+                case ACCESS_REQUEST:
+                    out.add(new AccessRequest().tryDecode(in));
+                    fireDecoded(ctx, out);
+                    String granted = ctx.channel().attr(MessageHandler.APPLICATION_ID).get();
+                    if (granted != null && !granted.equals(applicationId))
+                    {
+                        applicationId = granted;
+                        resolveLevels(levelFilter);
+                    }
+                    break;
+
+                default:
+                    out.add(new PolicyFileRequest().tryDecode(in));
+                    break;
+            }
+            framesDecoded[type.ordinal()]++;
+            bytesDecoded[type.ordinal()] += length;
         }
         catch (Exception e)
         {
+            metrics.decodeError();
+            if (e instanceof MalformedMessageException)
+            {
+                metrics.malformedMessage();
+            }
             log.error(e.getMessage(), e);
+            in.skipBytes(in.readableBytes());
             ctx.disconnect();
         }
     }
+
+    /**
+     * Passes on the messages decoded so far, ahead of the end of the read.
+     */
+    private static void fireDecoded(ChannelHandlerContext ctx, List<Object> out)
+    {
+        for (int i = 0; i < out.size(); i++)
+        {
+            ctx.fireChannelRead(out.get(i));
+        }
+        out.clear();
+    }
+
+    /**
+     * Adds the frames counted during the read to the shared metrics.
+     */
+    private void flushMetrics()
+    {
+        for (int i = 0; i < TYPES.length; i++)
+        {
+            if (framesDecoded[i] > 0)
+            {
+                metrics.framesDecoded(TYPES[i], framesDecoded[i], bytesDecoded[i]);
+                framesDecoded[i] = 0;
+                bytesDecoded[i] = 0;
+            }
+        }
+        if (recordsFiltered > 0)
+        {
+            metrics.recordsFiltered(recordsFiltered);
+            recordsFiltered = 0;
+        }
+    }
+
+    private void resolveLevels(LevelFilter filter)
+    {
+        levelFilter = filter;
+        levels = filter.forApplication(applicationId);
+    }
+
+    /**
+     * Walks the length prefixes of the frame at the reader index received so
+     * far, checking each one against its limit as soon as it arrives.
+     *
+     * @return The length of the whole frame, {@link InboundMessage#INCOMPLETE}
+     *  if it has not been fully received yet or {@link #OVERSIZED}.
+     */
+    private static int frameLength(ByteBuf in, int[] layout, int[] limits)
+    {
+        int start = in.readerIndex();
+        int end = in.writerIndex();
+        int offset = start + 1;
+        for (int i = 0; i < layout.length; i++)
+        {
+            int field = layout[i];
+            if (field == UTF)
+            {
+                if (end - offset < 2)
+                {
+                    return InboundMessage.INCOMPLETE;
+                }
+                int length = in.getUnsignedShort(offset);
+                if (length > limits[i])
+                {
+                    return OVERSIZED;
+                }
+                field = 2 + length;
+            }
+            offset += field;
+        }
+        return offset <= end ? offset - start : InboundMessage.INCOMPLETE;
+    }
+
+    /**
+     * Checks the level of the log record at the reader index against the
+     * current filter, without decoding anything.
+     *
+     * @return true if the record is to be skipped, false if it is accepted or
+     *  its level has not been received yet.
+     */
+    private boolean isFiltered(ByteBuf in)
+    {
+        int category = in.readerIndex() + 3;
+        if (in.writerIndex() < category)
+        {
+            return false;
+        }
+        int categoryLength = in.getUnsignedShort(category - 2);
+        int level = category + categoryLength;
+        if (in.writerIndex() < level + 4)
+        {
+            return false;
+        }
+        return !levels.accepts(in, category, categoryLength, in.getInt(level));
+    }
+
+    /**
+     * Starts skipping the frame at the reader index, see {@link #skip(ByteBuf)}.
+     */
+    private void startSkipping(ByteBuf in, int[] layout)
+    {
+        in.skipBytes(1);
+        skipLayout = layout;
+        skipField = 0;
+        skipRemaining = 0;
+    }
+
+    /**
+     * Skips as much of the frame being rejected as has been received.
+     *
+     * @return true if the whole frame has been skipped.
+     */
+    private boolean skip(ByteBuf in)
+    {
+        while (true)
+        {
+            if (skipRemaining > 0)
+            {
+                int skipped = Math.min(skipRemaining, in.readableBytes());
+                in.skipBytes(skipped);
+                skipRemaining -= skipped;
+                if (skipRemaining > 0)
+                {
+                    return false;
+                }
+            }
+            if (skipField == skipLayout.length)
+            {
+                skipLayout = null;
+                return true;
+            }
+            if (skipLayout[skipField] == UTF)
+            {
+                if (in.readableBytes() < 2)
+                {
+                    return false;
+                }
+                skipRemaining = in.readUnsignedShort();
+            }
+            else
+            {
+                skipRemaining = skipLayout[skipField];
+            }
+            skipField++;
+        }
+    }
 }
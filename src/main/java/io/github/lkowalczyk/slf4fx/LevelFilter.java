@@ -0,0 +1,139 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimum levels of accepted log records, keyed like logger names below the
+ * category prefix: the empty name applies to all records, an applicationId
+ * to the records of that application and {@code <applicationId>.<category>}
+ * to the application's categories starting with the given one. The longest
+ * matching name wins.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class LevelFilter {
+    static final LevelFilter NONE = new LevelFilter(Collections.<String, LogRecord.Level>emptyMap());
+
+    private final Map<String, LogRecord.Level> levels;
+
+    /**
+     * @param levels Minimum levels by name, neither of which may be null.
+     */
+    LevelFilter(Map<String, LogRecord.Level> levels) {
+        this.levels = Collections.unmodifiableMap(new HashMap<>(levels));
+    }
+
+    public Map<String, LogRecord.Level> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Resolves the levels applying to one application.
+     *
+     * @param applicationId application or null if not known yet, in which
+     *                      case only the level of all records applies.
+     */
+    public ApplicationLevels forApplication(String applicationId) {
+        int threshold = threshold(levels.get(""));
+        List<Map.Entry<String, LogRecord.Level>> categories = new ArrayList<>();
+        if (applicationId != null) {
+            LogRecord.Level level = levels.get(applicationId);
+            if (level != null)
+                threshold = threshold(level);
+            String prefix = applicationId + '.';
+            for (Map.Entry<String, LogRecord.Level> entry : levels.entrySet()) {
+                if (entry.getKey().startsWith(prefix))
+                    categories.add(entry);
+            }
+        }
+        // longest category first, so that the first match is the best one
+        Collections.sort(categories, new Comparator<Map.Entry<String, LogRecord.Level>>() {
+            @Override
+            public int compare(Map.Entry<String, LogRecord.Level> a, Map.Entry<String, LogRecord.Level> b) {
+                return b.getKey().length() - a.getKey().length();
+            }
+        });
+
+        int prefixLength = applicationId != null ? applicationId.length() + 1 : 0;
+        byte[][] categoryBytes = new byte[categories.size()][];
+        int[] categoryThresholds = new int[categories.size()];
+        for (int i = 0; i < categories.size(); i++) {
+            categoryBytes[i] = categories.get(i).getKey().substring(prefixLength).getBytes(CharsetUtil.UTF_8);
+            categoryThresholds[i] = threshold(categories.get(i).getValue());
+        }
+        return new ApplicationLevels(threshold, categoryBytes, categoryThresholds);
+    }
+
+    /**
+     * @return The largest wire level value accepted.
+     */
+    private static int threshold(LogRecord.Level level) {
+        return level != null ? level.ordinal() : LogRecord.Level.DEBUG.ordinal();
+    }
+
+    /**
+     * Levels of one application, matched against encoded records.
+     */
+    static final class ApplicationLevels {
+        private final int threshold;
+        private final byte[][] categories;
+        private final int[] categoryThresholds;
+        private final boolean acceptsAll;
+
+        ApplicationLevels(int threshold, byte[][] categories, int[] categoryThresholds) {
+            this.threshold = threshold;
+            this.categories = categories;
+            this.categoryThresholds = categoryThresholds;
+            int leastVerbose = threshold;
+            for (int categoryThreshold : categoryThresholds) {
+                leastVerbose = Math.min(leastVerbose, categoryThreshold);
+            }
+            this.acceptsAll = leastVerbose >= LogRecord.Level.DEBUG.ordinal();
+        }
+
+        /**
+         * @return true if no record can be filtered out, so there is no need
+         * to look at them.
+         */
+        public boolean acceptsAll() {
+            return acceptsAll;
+        }
+
+        /**
+         * Checks an encoded record without decoding it.
+         *
+         * @param category index of the category's UTF-8 bytes.
+         * @param length   length of the category in bytes.
+         * @param level    level as sent on the wire.
+         */
+        public boolean accepts(ByteBuf buffer, int category, int length, int level) {
+            // unknown wire values are decoded as INFO
+            int ordinal = level >= 0 && level < LogRecord.Level.values().length ? level
+                    : LogRecord.Level.INFO.ordinal();
+            for (int i = 0; i < categories.length; i++) {
+                if (matches(buffer, category, length, categories[i]))
+                    return ordinal <= categoryThresholds[i];
+            }
+            return ordinal <= threshold;
+        }
+
+        private static boolean matches(ByteBuf buffer, int index, int length, byte[] prefix) {
+            if (length < prefix.length)
+                return false;
+            for (int i = 0; i < prefix.length; i++) {
+                if (buffer.getByte(index + i) != prefix[i])
+                    return false;
+            }
+            return length == prefix.length || buffer.getByte(index + prefix.length) == '.';
+        }
+    }
+}
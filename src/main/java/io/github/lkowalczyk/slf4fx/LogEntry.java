@@ -0,0 +1,98 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.netty.util.Recycler;
+
+import java.net.SocketAddress;
+import java.util.List;
+
+/**
+ * A log record together with the application and connection it came from.
+ * Entries created by the server are pooled and go back to the pool together
+ * with their record once written.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public final class LogEntry {
+    private static final Recycler<LogEntry> RECYCLER = new Recycler<LogEntry>() {
+        @Override
+        protected LogEntry newObject(Recycler.Handle handle) {
+            return new LogEntry(handle);
+        }
+    };
+
+    private final Recycler.Handle handle;
+    private String applicationId;
+    private SocketAddress remoteAddress;
+    private LogRecord record;
+
+    public LogEntry(String applicationId, SocketAddress remoteAddress, LogRecord record) {
+        this.handle = null;
+        this.applicationId = applicationId;
+        this.remoteAddress = remoteAddress;
+        this.record = record;
+    }
+
+    private LogEntry(Recycler.Handle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Takes an entry from the pool.
+     */
+    static LogEntry newInstance(String applicationId, SocketAddress remoteAddress, LogRecord record) {
+        LogEntry entry = RECYCLER.get();
+        entry.applicationId = applicationId;
+        entry.remoteAddress = remoteAddress;
+        entry.record = record;
+        return entry;
+    }
+
+    /**
+     * @return applicationId granted to the connection.
+     */
+    public String getApplicationId() {
+        return applicationId;
+    }
+
+    /**
+     * @return Address of the client.
+     */
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public LogRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Releases the record and returns a pooled entry to the pool. Neither may
+     * be used afterwards.
+     */
+    void release() {
+        LogRecord record = this.record;
+        if (handle != null) {
+            applicationId = null;
+            remoteAddress = null;
+            this.record = null;
+            RECYCLER.recycle(this, handle);
+        }
+        record.release();
+    }
+
+    /**
+     * Releases the entries once they have been written.
+     */
+    static void release(List<LogEntry> entries) {
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            entries.get(i).release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LogEntry [applicationId=" + applicationId + ", remoteAddress=" + remoteAddress + ", record=" + record
+                + "]";
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.lkowalczyk.slf4fx;
+
+import java.util.List;
+
+/**
+ * Destination of the log records received by {@link SLF4FxServer}.
+ * <p/>
+ * Records arrive in batches: on the I/O thread, all records decoded from
+ * one read of a channel; with asynchronous dispatch, whatever a dispatch
+ * thread drained from its queue. Records of one application are delivered
+ * in the order they were received, but batches may be delivered from
+ * several threads at once, so implementations must be thread-safe.
+ * Records carry their {@link io.github.lkowalczyk.slf4fx.message.LogRecord#getReceivedNanos() receive time}
+ * and {@link io.github.lkowalczyk.slf4fx.message.LogRecord#getSequence() sequence number}
+ * within their connection, by which a sink can merge or reorder them
+ * without synchronizing with other threads.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ * @see SLF4FxServer#setLogSink(LogSink)
+ * @see Slf4jLogSink
+ */
+public interface LogSink {
+    /**
+     * Called by {@link SLF4FxServer#start()} before the first batch.
+     */
+    void open() throws Exception;
+
+    /**
+     * Receives a batch of records. The list and its contents must not be
+     * used after this method returns: the entries go back to a pool then and
+     * the records are released, unless the sink
+     * {@link io.github.lkowalczyk.slf4fx.message.LogRecord#retain() retained}
+     * them, in which case it must keep the records rather than the entries.
+     * Messages are decoded on the first
+     * {@link io.github.lkowalczyk.slf4fx.message.LogRecord#getMessage()},
+     * which sinks that filter records should call as late as possible.
+     *
+     * @param entries non-empty list of records, in the order of arrival.
+     * @throws Exception the records are then considered lost; the exception
+     *                   is logged and the server carries on.
+     */
+    void write(List<LogEntry> entries) throws Exception;
+
+    /**
+     * Called by {@link SLF4FxServer#stop()} after the last batch. The sink
+     * may be opened again by a subsequent {@link SLF4FxServer#start()}.
+     */
+    void close() throws Exception;
+}
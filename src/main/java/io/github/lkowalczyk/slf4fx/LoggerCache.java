@@ -0,0 +1,192 @@
+package io.github.lkowalczyk.slf4fx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded cache of loggers keyed by applicationId and the category sent
+ * by the client. An instance is shareable among pipelines.
+ * <p/>
+ * Lookups of cached loggers neither build the logger name nor go through
+ * {@link LoggerFactory}, and take no lock. When the cache is full, an entry
+ * is evicted to make room for a new one by the clock algorithm, which
+ * approximates evicting the least recently used one: a lookup marks the
+ * entry it finds, and the eviction hand goes round the entries, unmarking
+ * the marked ones until it comes to an unmarked one. Changing the category prefix starts
+ * over with an empty cache; loggers still being looked up under the old
+ * prefix end up in the discarded one.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+class LoggerCache {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private volatile Generation generation;
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+
+    LoggerCache(String categoryPrefix, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be larger than 0 (" + capacity + ")");
+        this.capacity = capacity;
+        this.generation = new Generation(categoryPrefix, capacity);
+    }
+
+    /**
+     * Replaces the category prefix, dropping all cached loggers.
+     */
+    public void setCategoryPrefix(String categoryPrefix) {
+        generation = new Generation(categoryPrefix, capacity);
+    }
+
+    public String getCategoryPrefix() {
+        return generation.categoryPrefix;
+    }
+
+    /**
+     * Returns the logger for a category sent by the given application,
+     * named {@code <categoryPrefix>.<applicationId>.<category>}.
+     */
+    public Logger getLogger(String applicationId, String category) {
+        Generation generation = this.generation;
+        ConcurrentMap<String, Entry> byCategory = generation.loggers.get(applicationId);
+        Entry entry = byCategory != null ? byCategory.get(category) : null;
+        if (entry != null) {
+            // skip the write when marked already, to leave the cache line shared
+            if (!entry.referenced)
+                entry.referenced = true;
+            hits.increment();
+            return entry.logger;
+        }
+        misses.increment();
+
+        Logger logger = LoggerFactory.getLogger(loggerName(generation.categoryPrefix, applicationId, category));
+        return generation.add(applicationId, category, logger);
+    }
+
+    private static String loggerName(String categoryPrefix, String applicationId, String category) {
+        StringBuilder name = new StringBuilder();
+        if (categoryPrefix != null)
+            name.append(categoryPrefix);
+        name.append('.');
+        name.append(applicationId).append('.').append(category);
+        return name.toString();
+    }
+
+    /**
+     * Removes all cached loggers. Hit and miss counters are not reset.
+     */
+    public void clear() {
+        generation = new Generation(generation.categoryPrefix, capacity);
+    }
+
+    public int size() {
+        return generation.size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * A cached logger.
+     */
+    private static final class Entry {
+        final String applicationId;
+        final String category;
+        final Logger logger;
+        /** Set by lookups, cleared by the eviction hand passing by. */
+        volatile boolean referenced;
+
+        Entry(String applicationId, String category, Logger logger) {
+            this.applicationId = applicationId;
+            this.category = category;
+            this.logger = logger;
+        }
+    }
+
+    /**
+     * Loggers cached under one category prefix. Lookups go through the maps
+     * without locking; adding and evicting entries is synchronized.
+     */
+    private static final class Generation {
+        final String categoryPrefix;
+        final ConcurrentMap<String, ConcurrentMap<String, Entry>> loggers =
+                new ConcurrentHashMap<String, ConcurrentMap<String, Entry>>();
+        /** Entries in the order the eviction hand visits them. */
+        private final List<Entry> clock = new ArrayList<>();
+        private final int capacity;
+        private int hand;
+        volatile int size;
+
+        Generation(String categoryPrefix, int capacity) {
+            this.categoryPrefix = categoryPrefix;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Caches a logger unless another thread got there first.
+         *
+         * @return The cached logger.
+         */
+        synchronized Logger add(String applicationId, String category, Logger logger) {
+            ConcurrentMap<String, Entry> byCategory = loggers.get(applicationId);
+            Entry existing = byCategory != null ? byCategory.get(category) : null;
+            if (existing != null)
+                return existing.logger;
+
+            Entry entry = new Entry(applicationId, category, logger);
+            if (clock.size() < capacity) {
+                clock.add(entry);
+                size = clock.size();
+            }
+            else {
+                clock.set(evict(), entry);
+            }
+            // looked up again, eviction may have dropped the map
+            byCategory = loggers.get(applicationId);
+            if (byCategory == null) {
+                byCategory = new ConcurrentHashMap<String, Entry>();
+                loggers.put(applicationId, byCategory);
+            }
+            byCategory.put(category, entry);
+            return logger;
+        }
+
+        /**
+         * Moves the hand to the first unmarked entry and removes it.
+         *
+         * @return The position of the removed entry in {@link #clock}.
+         */
+        private int evict() {
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) % clock.size();
+                Entry entry = clock.get(slot);
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    continue;
+                }
+                ConcurrentMap<String, Entry> byCategory = loggers.get(entry.applicationId);
+                byCategory.remove(entry.category);
+                if (byCategory.isEmpty())
+                    loggers.remove(entry.applicationId);
+                return slot;
+            }
+        }
+    }
+}
@@ -1,36 +1,130 @@
 package io.github.lkowalczyk.slf4fx;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.github.lkowalczyk.slf4fx.message.AccessRequest;
 import io.github.lkowalczyk.slf4fx.message.AccessResponse;
 import io.github.lkowalczyk.slf4fx.message.LogRecord;
-import io.github.lkowalczyk.slf4fx.message.OutboundMessage;
 import io.github.lkowalczyk.slf4fx.message.PolicyFileRequest;
-import io.github.lkowalczyk.slf4fx.message.PolicyFileResponse;
 
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Handles incoming messages. An instance is NOT shareable among pipelines.
+ * <p>
+ * Responses are written without flushing and flushed together once the
+ * read they were requested in is over, so that requests pipelined by a
+ * client, such as a policy file request followed by an access request, are
+ * answered with a single flush.
  * 
  * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
  */
 class MessageHandler extends ChannelInboundHandlerAdapter
 {
+    /** Channel attribute holding the applicationId access was granted to. */
+    static final AttributeKey<String> APPLICATION_ID =
+            AttributeKey.valueOf(MessageHandler.class.getName() + ".applicationId");
+
+    private static final ByteBuf ACCESS_GRANTED = new AccessResponse(true).toSharedBuffer();
+    private static final ByteBuf ACCESS_DENIED = new AccessResponse(false).toSharedBuffer();
+
     private final Logger log = LoggerFactory.getLogger(MessageHandler.class);
-    private final String categoryPrefix;
-    private final Map<String, String> credentials;
+    private final LogSink sink;
+    private final AsyncLogDispatcher dispatcher;
+    private final ServerMetrics metrics;
+    private final RateLimiter rateLimiter;
+    private final AtomicReference<ServerConfig> config;
     private String applicationId;
-    private final String policyFileResponse;
+    private StripedCounter applicationRecords;
+    private StripedCounter connectionRecords;
+    private TokenBucket rateLimit;
+    private final int handshakeTimeout;
+    private ScheduledFuture<?> handshakeTimeoutFuture;
+    private SocketAddress remoteAddress;
+    private final List<LogEntry> pending = new ArrayList<>();
+    private boolean flushNeeded;
     
-    public MessageHandler(String categoryPrefix, Map<String, String> credentials, Map<String, Object> parameters)
+    /**
+     * @param sink Destination of log records.
+     * @param dispatcher Asynchronous dispatch stage or null to write records
+     *  to the sink on the I/O thread.
+     * @param metrics Counters of channels, access requests and records.
+     * @param rateLimiter Per-application rate limits or null for none.
+     * @param config Current credentials and policy file, read on every request.
+     * @param parameters Per-channel settings: {@code handshake-timeout} in seconds.
+     */
+    public MessageHandler(LogSink sink, AsyncLogDispatcher dispatcher, ServerMetrics metrics,
+            RateLimiter rateLimiter, AtomicReference<ServerConfig> config, Map<String, Object> parameters)
     {
-        this.categoryPrefix = categoryPrefix;
-        this.credentials = credentials;
-        this.policyFileResponse = (String) parameters.get("policy-file-response");
+        this.sink = sink;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+        this.config = config;
+        Integer handshakeTimeout = (Integer) parameters.get("handshake-timeout");
+        this.handshakeTimeout = handshakeTimeout != null ? handshakeTimeout : 0;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        remoteAddress = ctx.channel().remoteAddress();
+        connectionRecords = metrics.channelActive(remoteAddress);
+        if (handshakeTimeout > 0)
+        {
+            handshakeTimeoutFuture = ctx.executor().schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (applicationId == null)
+                    {
+                        log.info("No access granted to {} within {}s, closing", ctx.channel().remoteAddress(),
+                                handshakeTimeout);
+                        ctx.close();
+                    }
+                }
+            }, handshakeTimeout, TimeUnit.SECONDS);
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelHandshakeTimeout();
+        flushPending();
+        metrics.channelInactive(remoteAddress);
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent)
+        {
+            log.debug("Session {} idle, closing", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    private void cancelHandshakeTimeout()
+    {
+        if (handshakeTimeoutFuture != null)
+        {
+            handshakeTimeoutFuture.cancel(false);
+            handshakeTimeoutFuture = null;
+        }
     }
 
     @Override
@@ -38,83 +132,112 @@ class MessageHandler extends ChannelInboundHandlerAdapter
         if (msg instanceof LogRecord)
         {
             LogRecord message = (LogRecord) msg;
-            handleLogRecord(message);
+            handleLogRecord(ctx, message);
             return;
         }
 
-        OutboundMessage response;
+        ByteBuf response;
 
         if (msg instanceof AccessRequest)
         {
             AccessRequest message = (AccessRequest) msg;
-            response = handleAccessRequest(message);
+            response = handleAccessRequest(ctx, message);
         }
         else if (msg instanceof PolicyFileRequest)
         {
             PolicyFileRequest message = (PolicyFileRequest) msg;
-            response = handlePolicyFileRequest(message, policyFileResponse);
+            response = handlePolicyFileRequest(message);
         }
         else {
             throw new IllegalArgumentException("Nieznany komunikat: " + msg);
         }
 
-        ctx.writeAndFlush(response);
+        ctx.write(response);
+        flushNeeded = true;
     }
 
-    private AccessResponse handleAccessRequest(AccessRequest message)
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (flushNeeded)
+        {
+            flushNeeded = false;
+            ctx.flush();
+        }
+        flushPending();
+        super.channelReadComplete(ctx);
+    }
+
+    /**
+     * Writes the records collected during the last read to the sink in one batch.
+     */
+    private void flushPending()
+    {
+        if (pending.isEmpty())
+        {
+            return;
+        }
+        metrics.recordsWritten(pending);
+        try
+        {
+            sink.write(pending);
+        }
+        catch (Exception e)
+        {
+            log.error(e.getMessage(), e);
+        }
+        finally
+        {
+            LogEntry.release(pending);
+            pending.clear();
+        }
+    }
+
+    private ByteBuf handleAccessRequest(ChannelHandlerContext ctx, AccessRequest message)
     {
-        
-        boolean grant = credentials.isEmpty()
-                || (credentials.containsKey(message.getApplicationId()) && credentials.get(
-                        message.getApplicationId()).equals(message.getSecret()));
-        
+        boolean grant = config.get().getCredentialIndex().verify(message.getApplicationId(), message.getSecret());
         if (grant)
         {
             this.applicationId = message.getApplicationId();
+            this.applicationRecords = metrics.applicationCounter(applicationId);
+            this.rateLimit = rateLimiter != null ? rateLimiter.getBucket(applicationId) : null;
+            ctx.channel().attr(APPLICATION_ID).set(applicationId);
+            cancelHandshakeTimeout();
         }
         else
         {
-            log.info("Access request ({}:{}): rejected", message.getApplicationId(), message.getSecret());
+            metrics.accessRejected();
+            log.info("Access request ({}): rejected", message.getApplicationId());
         }
-        return new AccessResponse(grant);
+        return (grant ? ACCESS_GRANTED : ACCESS_DENIED).duplicate();
     }
     
-    private PolicyFileResponse handlePolicyFileRequest(PolicyFileRequest message, String policyFileResponse)
+    private ByteBuf handlePolicyFileRequest(PolicyFileRequest message)
     {
-        PolicyFileResponse response = new PolicyFileResponse(policyFileResponse);
-        return response;
+        return config.get().getFlexPolicyResponseBuffer().duplicate();
     }
     
-    private void handleLogRecord(LogRecord message)
+    private void handleLogRecord(ChannelHandlerContext ctx, LogRecord message)
     {
         if (applicationId == null)
         {
+            message.release();
             return;
         }
-        StringBuilder category = new StringBuilder();
-        if (categoryPrefix != null)
-            category.append(categoryPrefix);
-        category.append('.');
-        category.append(applicationId).append('.').append(message.getCategory());
-        Logger logger = LoggerFactory.getLogger(category.toString());
-        switch (message.getLevel())
-        {
-            case DEBUG:
-                logger.debug(message.getMessage());
-                break;
-            
-            case WARN:
-                logger.warn(message.getMessage());
-                break;
-            
-            case ERROR:
-                logger.error(message.getMessage());
-                break;
-            
-            case INFO:
-            default:
-                logger.info(message.getMessage());
-                break;
+        if (rateLimit != null && !rateLimit.tryAcquire(message.getLevel()))
+        {
+            metrics.recordRateLimited();
+            message.release();
+            return;
+        }
+        metrics.recordReceived(applicationRecords, connectionRecords);
+        LogEntry entry = LogEntry.newInstance(applicationId, remoteAddress, message);
+        if (dispatcher != null)
+        {
+            dispatcher.dispatch(ctx.channel(), entry);
+        }
+        else
+        {
+            pending.add(entry);
         }
     }
 }
@@ -0,0 +1,34 @@
+package io.github.lkowalczyk.slf4fx;
+
+/**
+ * Decides what happens to a log record when the asynchronous dispatch queue
+ * is full.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public enum OverflowPolicy {
+    /**
+     * The I/O thread waits until there is room in the queue. No record is lost
+     * but a slow appender stalls every channel of the event loop, as without
+     * the dispatch stage.
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued record is discarded to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * New DEBUG and INFO records are discarded, WARN and ERROR records replace
+     * the oldest queued record.
+     */
+    DROP_BY_LEVEL,
+
+    /**
+     * The record is queued anyway and reading from the client's channel is
+     * suspended until the queue drains to half of its capacity, so TCP flow
+     * control pushes back on the client.
+     */
+    BACKPRESSURE
+}
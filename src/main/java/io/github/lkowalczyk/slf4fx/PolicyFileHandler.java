@@ -0,0 +1,62 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves the Flash socket policy file on a dedicated listener. As soon as
+ * the zero byte terminating {@code <policy-file-request/>} arrives, the
+ * pre-encoded policy is written and the connection is closed. Nothing is
+ * decoded. An instance is NOT shareable among pipelines.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+class PolicyFileHandler extends ChannelInboundHandlerAdapter {
+    /** Length of {@code <policy-file-request/>\0} with some slack. */
+    private static final int MAX_REQUEST_LENGTH = 64;
+
+    private final Logger log = LoggerFactory.getLogger(PolicyFileHandler.class);
+    private final AtomicReference<ServerConfig> config;
+    private int received;
+
+    /**
+     * @param config Current settings holding the encoded policy file.
+     */
+    PolicyFileHandler(AtomicReference<ServerConfig> config) {
+        this.config = config;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        try {
+            ByteBuf in = (ByteBuf) msg;
+            received += in.readableBytes();
+            if (in.forEachByte(ByteBufProcessor.FIND_NUL) != -1) {
+                ctx.writeAndFlush(config.get().getFlexPolicyResponseBuffer().duplicate())
+                        .addListener(ChannelFutureListener.CLOSE);
+            }
+            else if (received > MAX_REQUEST_LENGTH) {
+                log.info("No policy file request from {} within {} bytes, closing", ctx.channel().remoteAddress(),
+                        MAX_REQUEST_LENGTH);
+                ctx.close();
+            }
+        }
+        finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.debug("Closing {}: {}", ctx.channel().remoteAddress(), cause.toString());
+        ctx.close();
+    }
+}
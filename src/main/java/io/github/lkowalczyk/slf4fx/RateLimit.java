@@ -0,0 +1,57 @@
+package io.github.lkowalczyk.slf4fx;
+
+/**
+ * Sustained rate and burst size of log records accepted from one application,
+ * or of connections accepted by the server.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ * @see SLF4FxServer#setRateLimits(java.util.Map)
+ * @see SLF4FxServer#setAcceptRateLimit(RateLimit)
+ */
+public final class RateLimit {
+    private final double recordsPerSecond;
+    private final int burst;
+
+    /**
+     * @param recordsPerSecond Sustained rate, larger than 0.
+     * @param burst            Number of records accepted at once after a quiet
+     *                         period, larger than 0.
+     */
+    public RateLimit(double recordsPerSecond, int burst) {
+        if (!(recordsPerSecond > 0))
+            throw new IllegalArgumentException("recordsPerSecond must be larger than 0 (" + recordsPerSecond + ")");
+        if (burst < 1)
+            throw new IllegalArgumentException("burst must be larger than 0 (" + burst + ")");
+        this.recordsPerSecond = recordsPerSecond;
+        this.burst = burst;
+    }
+
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof RateLimit))
+            return false;
+        RateLimit other = (RateLimit) o;
+        return Double.compare(recordsPerSecond, other.recordsPerSecond) == 0 && burst == other.burst;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(recordsPerSecond);
+        return 31 * (int) (bits ^ (bits >>> 32)) + burst;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimit [recordsPerSecond=" + recordsPerSecond + ", burst=" + burst + "]";
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.lkowalczyk.slf4fx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a {@link TokenBucket} per applicationId and periodically logs a
+ * summary of the records they dropped. An instance is shareable among
+ * pipelines.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+class RateLimiter implements Runnable {
+    /** Applications limited separately by the default limit, the rest share one bucket. */
+    static final int MAX_BUCKETS = 4096;
+    static final String OTHER_APPLICATIONS = "(other)";
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+
+    private final Map<String, RateLimit> limits;
+    private final RateLimit defaultLimit;
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final TokenBucket otherBucket;
+
+    /**
+     * @param limits       Limits by applicationId.
+     * @param defaultLimit Limit of other applications or null for none.
+     */
+    RateLimiter(Map<String, RateLimit> limits, RateLimit defaultLimit) {
+        this.limits = new HashMap<>(limits);
+        this.defaultLimit = defaultLimit;
+        this.otherBucket = defaultLimit != null ? new TokenBucket(OTHER_APPLICATIONS, defaultLimit) : null;
+    }
+
+    /**
+     * Returns the bucket of an application. Meant to be looked up once per
+     * connection, when access is granted.
+     *
+     * @return The bucket or null if the application is not limited.
+     */
+    public TokenBucket getBucket(String applicationId) {
+        TokenBucket bucket = buckets.get(applicationId);
+        if (bucket != null)
+            return bucket;
+        RateLimit limit = limits.get(applicationId);
+        if (limit == null) {
+            if (defaultLimit == null)
+                return null;
+            if (buckets.size() >= MAX_BUCKETS)
+                return otherBucket;
+            limit = defaultLimit;
+        }
+        bucket = new TokenBucket(applicationId, limit);
+        TokenBucket existing = buckets.putIfAbsent(applicationId, bucket);
+        return existing != null ? existing : bucket;
+    }
+
+    /**
+     * Logs the records dropped since the last run.
+     */
+    @Override
+    public void run() {
+        for (TokenBucket bucket : buckets.values()) {
+            report(bucket);
+        }
+        if (otherBucket != null)
+            report(otherBucket);
+    }
+
+    private void report(TokenBucket bucket) {
+        long debug = bucket.drainDroppedDebug();
+        long info = bucket.drainDroppedInfo();
+        if (debug > 0 || info > 0) {
+            log.warn("Rate limit of {} exceeded, dropped {} DEBUG and {} INFO records", bucket.getApplicationId(),
+                    debug, info);
+        }
+    }
+}
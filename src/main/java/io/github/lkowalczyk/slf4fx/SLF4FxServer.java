@@ -1,16 +1,24 @@
 package io.github.lkowalczyk.slf4fx;
 
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,11 +26,21 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Netty-based server for receiving log messages generated by SLF4Fx's client.
@@ -39,32 +57,69 @@ import java.util.Map;
  * it will also reject a map which contains a null key or a null value.
  * <p/>
  * <li>{@link #stop()} throws InterruptedException.
- * <p/>
- * <li>{@link #setReaderBufferSize(int)} is unimplemented, calling it has no effect.
  * </ul>
  *
  * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
  */
 public class SLF4FxServer {
+    private static final int RATE_LIMIT_SUMMARY_INTERVAL = 10;
+    private static final String CREDENTIAL_PREFIX = "credential.";
+    private static final String LEVEL_KEY = "level";
+
     private final Logger log = LoggerFactory.getLogger(SLF4FxServer.class);
 
-    private String flexPolicyResponse;
+    private final AtomicReference<ServerConfig> config = new AtomicReference<>(ServerConfig.INITIAL);
+    private final Object configLock = new Object();
+    private File configFile;
     private SocketAddress localAddress = new InetSocketAddress("localhost", 18888);
-    private Map<String, String> credentials = new HashMap<>();
+    private Map<String, Object> serverBootstrapOptions = Collections.emptyMap();
+    private Map<String, RateLimit> rateLimits = new HashMap<>();
+    private RateLimit defaultRateLimit;
     private int sessionTimeout = 60;
+    private int handshakeTimeout = 10;
+    private int duplicateSuppressionWindow = 0;
+    private int maxCategoryLength = FrameLimits.MAX_STRING_LENGTH;
+    private int maxMessageLength = FrameLimits.MAX_STRING_LENGTH;
+    private int maxApplicationIdLength = FrameLimits.MAX_STRING_LENGTH;
+    private int maxPendingBytes = FrameLimits.MAX_FRAME_LENGTH;
     private int workersCount = 1;
-    private String categoryPrefix = "slf4fx";
+    private int readerBufferSize = 0;
+    private int readerBufferMinimum = 64;
+    private int readerBufferInitial = 1024;
+    private int readerBufferMaximum = 65536;
+    private int loggerCacheCapacity = LoggerCache.DEFAULT_CAPACITY;
+    private int dispatchThreads = 0;
+    private int dispatchQueueCapacity = AsyncLogDispatcher.DEFAULT_QUEUE_CAPACITY;
+    private OverflowPolicy dispatchOverflowPolicy = OverflowPolicy.BLOCK;
+    private Transport transport = Transport.NIO;
+    private int acceptorCount = 1;
+    private int backlog = 128;
+    private int maxConnections = 0;
+    private int maxConnectionsPerAddress = 0;
+    private RateLimit acceptRateLimit;
+    private SocketAddress policyServerAddress;
+    private int policyServerWorkersCount = 1;
+    private LogSink logSink;
 
+    private volatile LoggerCache loggerCache;
+    private LogSink activeLogSink;
+    private volatile AsyncLogDispatcher dispatcher;
+    private ConfigFileWatcher configFileWatcher;
+    private volatile ServerMetrics metrics;
+    private ObjectName mbeanName;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private ChannelFuture future;
+    private final List<ChannelFuture> futures = new ArrayList<>();
+    private EventLoopGroup policyBossGroup;
+    private EventLoopGroup policyWorkerGroup;
+    private ChannelFuture policyFuture;
 
     /**
      * This constructor works the same as calling:
      * <p/>
      * <pre>
-     * SLF4FxServer(new InetSocketAddress("localhost", 18888), new NioServerSocketChannelFactory(),
-     *              { "child.tcpNoDelay": true, "child.keepAlive", true }, {});
+     * SLF4FxServer(new InetSocketAddress("localhost", 18888),
+     *              { "child.tcpNoDelay": true, "child.keepAlive", true }, {}, 1);
      * </pre>
      * <p/>
      * (maps in pseudocode).
@@ -73,13 +128,15 @@ public class SLF4FxServer {
     public SLF4FxServer() {
     }
 
+    /**
+     * @param serverBootstrapOptions See {@link #setServerBootstrapOptions(Map)}.
+     */
     public SLF4FxServer(SocketAddress localAddress, Map<String, Object> serverBootstrapOptions,
                         Map<String, String> credentials, int workersCount) {
-        if (localAddress == null)
-            throw new NullPointerException("localAddress");
-        if (serverBootstrapOptions == null)
-            throw new NullPointerException("serverBootstrapOptions");
+        setDefaultLocalAddress(localAddress);
+        setServerBootstrapOptions(serverBootstrapOptions);
         setCredentials(credentials);
+        setWorkersCount(workersCount);
     }
 
     public void setDefaultLocalAddress(final SocketAddress localAddress) {
@@ -102,10 +159,140 @@ public class SLF4FxServer {
         return workersCount;
     }
 
+    /**
+     * Sets options applied to the listening and accepted channels, on top of
+     * the defaults ({@code SO_BACKLOG} from {@link #setBacklog(int)} and
+     * {@code SO_REUSEADDR} for the listening channel, {@code child.SO_KEEPALIVE},
+     * {@code child.TCP_NODELAY} and the pooled {@code child.ALLOCATOR} for
+     * accepted ones). Names prefixed with {@code child.} apply to accepted
+     * channels. Both Netty 3 names like {@code child.tcpNoDelay} and Netty 4
+     * {@link ChannelOption} names like {@code child.TCP_NODELAY} are accepted;
+     * unknown names are ignored with a warning.
+     *
+     * @param serverBootstrapOptions option names and values, not null.
+     */
+    public void setServerBootstrapOptions(Map<String, Object> serverBootstrapOptions) {
+        if (serverBootstrapOptions == null)
+            throw new NullPointerException("serverBootstrapOptions");
+        this.serverBootstrapOptions = new HashMap<>(serverBootstrapOptions);
+    }
+
+    public Map<String, Object> getServerBootstrapOptions() {
+        return Collections.unmodifiableMap(serverBootstrapOptions);
+    }
+
+    /**
+     * Selects the network transport. Default is {@link Transport#NIO}.
+     * Takes effect on the next {@link #start()}.
+     */
+    public void setTransport(Transport transport) {
+        if (transport == null)
+            throw new NullPointerException("transport");
+        this.transport = transport;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the number of listening sockets bound to the local address with
+     * {@code SO_REUSEPORT}, each served by its own acceptor thread. Requires
+     * the epoll transport; with NIO a single socket is always used. Default
+     * is 1. Takes effect on the next {@link #start()}.
+     *
+     * @param acceptorCount number of listening sockets, larger than 0.
+     * @see #setTransport(Transport)
+     */
+    public void setAcceptorCount(int acceptorCount) {
+        if (acceptorCount < 1)
+            throw new IllegalArgumentException("acceptorCount must be larger than 0 (" + acceptorCount + ")");
+        this.acceptorCount = acceptorCount;
+    }
+
+    public int getAcceptorCount() {
+        return acceptorCount;
+    }
+
+    /**
+     * Sets the length of the queue of connections waiting to be accepted on
+     * the local address. Default is 128. Takes effect on the next {@link #start()}.
+     *
+     * @param backlog {@code SO_BACKLOG} of the listening sockets, larger than 0.
+     */
+    public void setBacklog(int backlog) {
+        if (backlog < 1)
+            throw new IllegalArgumentException("backlog must be larger than 0 (" + backlog + ")");
+        this.backlog = backlog;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Sets the maximum number of open connections. Connections accepted
+     * beyond it are closed right away, before a pipeline is created for
+     * them, and counted in {@link ServerStats#getRejectedConnectionCount()}.
+     * Default is 0, which means no limit. Takes effect on the next {@link #start()}.
+     *
+     * @param maxConnections number of connections, 0 or more.
+     */
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections < 0)
+            throw new IllegalArgumentException("maxConnections must not be negative (" + maxConnections + ")");
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of open connections from a single IP address,
+     * enforced like {@link #setMaxConnections(int)}. Default is 0, which means
+     * no limit. Takes effect on the next {@link #start()}.
+     *
+     * @param maxConnectionsPerAddress number of connections, 0 or more.
+     */
+    public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+        if (maxConnectionsPerAddress < 0)
+            throw new IllegalArgumentException("maxConnectionsPerAddress must not be negative ("
+                    + maxConnectionsPerAddress + ")");
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    }
+
+    public int getMaxConnectionsPerAddress() {
+        return maxConnectionsPerAddress;
+    }
+
+    /**
+     * Sets the limit of the rate at which connections are accepted, the
+     * limit's records per second being connections per second. Connections
+     * beyond it are rejected like those beyond {@link #setMaxConnections(int)},
+     * which spreads out a reconnecting crowd of clients. Default is null,
+     * which means no limit. Takes effect on the next {@link #start()}.
+     *
+     * @param acceptRateLimit limit shared by all acceptors, or null.
+     */
+    public void setAcceptRateLimit(RateLimit acceptRateLimit) {
+        this.acceptRateLimit = acceptRateLimit;
+    }
+
+    public RateLimit getAcceptRateLimit() {
+        return acceptRateLimit;
+    }
+
     /**
      * Sets accepted credentials consisting of applicationId-secret pairs
      * neither of which may be null. Default credentials are empty which means
      * all logging is accepted.
+     * <p/>
+     * Instead of the plain secret, a value may hold {@code sha256:} followed
+     * by the hex encoded SHA-256 digest of its UTF-8 bytes. Only digests are
+     * kept in memory either way. May be called on a running server to rotate
+     * secrets; access requests received afterwards, also on connections
+     * already open, are checked against the new credentials.
      *
      * @param credentials applicationId-secret pairs neither of which may be null.
      */
@@ -116,14 +303,65 @@ public class SLF4FxServer {
             if (entry.getKey() == null || entry.getValue() == null)
                 throw new IllegalArgumentException("Each credential must have a non-null applicationId and secret");
         }
-        this.credentials = new HashMap<String, String>(credentials);
+        synchronized (configLock) {
+            setConfig(config.get().withCredentials(credentials));
+        }
     }
 
     public Map<String, String> getCredentials() {
-        return Collections.unmodifiableMap(credentials);
+        return config.get().getCredentials();
     }
 
+    /**
+     * Sets limits of the rate of log records accepted from each applicationId.
+     * Each application has a token bucket shared by all of its connections.
+     * When it runs out, DEBUG and INFO records are dropped while WARN and
+     * ERROR ones are still accepted; a summary of dropped records is logged
+     * every 10 seconds. Default is empty, which means no limits. Takes effect
+     * on the next {@link #start()}.
+     *
+     * @param rateLimits applicationId-limit pairs neither of which may be null.
+     * @see #setDefaultRateLimit(RateLimit)
+     */
+    public void setRateLimits(Map<String, RateLimit> rateLimits) {
+        if (rateLimits == null)
+            throw new NullPointerException("rateLimits");
+        for (Map.Entry<String, RateLimit> entry : rateLimits.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null)
+                throw new IllegalArgumentException("Each rate limit must have a non-null applicationId and limit");
+        }
+        this.rateLimits = new HashMap<>(rateLimits);
+    }
+
+    public Map<String, RateLimit> getRateLimits() {
+        return Collections.unmodifiableMap(rateLimits);
+    }
+
+    /**
+     * Sets the rate limit of applications not listed in {@link #setRateLimits(Map)}.
+     * Default is null, which leaves them unlimited. Takes effect on the next
+     * {@link #start()}.
+     *
+     * @param defaultRateLimit limit applied to each application separately, or null.
+     */
+    public void setDefaultRateLimit(RateLimit defaultRateLimit) {
+        this.defaultRateLimit = defaultRateLimit;
+    }
+
+    public RateLimit getDefaultRateLimit() {
+        return defaultRateLimit;
+    }
+
+    /**
+     * Sets the number of seconds after which a connection on which nothing
+     * has been received is closed. Default is 60, 0 disables the timeout.
+     * Applies to connections accepted afterwards.
+     *
+     * @param sessionTimeout Idle timeout in seconds, 0 or more.
+     */
     public void setSessionTimeout(final int sessionTimeout) {
+        if (sessionTimeout < 0)
+            throw new IllegalArgumentException("sessionTimeout must not be negative (" + sessionTimeout + ")");
         this.sessionTimeout = sessionTimeout;
     }
 
@@ -131,8 +369,126 @@ public class SLF4FxServer {
         return sessionTimeout;
     }
 
+    /**
+     * Sets the number of seconds a client has after connecting to be granted
+     * access with an access request, after which the connection is closed.
+     * Default is 10, 0 disables the timeout. Applies to connections accepted
+     * afterwards.
+     *
+     * @param handshakeTimeout Handshake timeout in seconds, 0 or more.
+     */
+    public void setHandshakeTimeout(final int handshakeTimeout) {
+        if (handshakeTimeout < 0)
+            throw new IllegalArgumentException("handshakeTimeout must not be negative (" + handshakeTimeout + ")");
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    public int getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    /**
+     * Sets the window in milliseconds within which identical log records
+     * (same category, level and message) from a connection are collapsed:
+     * the first one is forwarded, the repeats are only counted and forwarded
+     * as one record with " (repeated N times)" appended to the message at
+     * the end of the first read after the window is over, or when the
+     * connection closes. Repeats are counted per connection, not across the
+     * connections of an application. Default is 0, which disables
+     * suppression. Applies to connections accepted afterwards.
+     *
+     * @param duplicateSuppressionWindow Window in milliseconds, 0 or more.
+     */
+    public void setDuplicateSuppressionWindow(int duplicateSuppressionWindow) {
+        if (duplicateSuppressionWindow < 0)
+            throw new IllegalArgumentException("duplicateSuppressionWindow must not be negative ("
+                    + duplicateSuppressionWindow + ")");
+        this.duplicateSuppressionWindow = duplicateSuppressionWindow;
+    }
+
+    public int getDuplicateSuppressionWindow() {
+        return duplicateSuppressionWindow;
+    }
+
+    /**
+     * Sets the maximum length of a log record's category in UTF-8 bytes. Log
+     * records with longer categories are skipped without being buffered and
+     * counted in {@link ServerStats#getOversizedFrameCount()}. Default is
+     * 65535, the most the protocol allows. Takes effect on the next {@link #start()}.
+     *
+     * @param maxCategoryLength Length in bytes, 0 to 65535.
+     */
+    public void setMaxCategoryLength(int maxCategoryLength) {
+        this.maxCategoryLength = checkStringLimit("maxCategoryLength", maxCategoryLength);
+    }
+
+    public int getMaxCategoryLength() {
+        return maxCategoryLength;
+    }
+
+    /**
+     * Sets the maximum length of a log record's message in UTF-8 bytes,
+     * handled like {@link #setMaxCategoryLength(int)}. Default is 65535.
+     * Takes effect on the next {@link #start()}.
+     *
+     * @param maxMessageLength Length in bytes, 0 to 65535.
+     */
+    public void setMaxMessageLength(int maxMessageLength) {
+        this.maxMessageLength = checkStringLimit("maxMessageLength", maxMessageLength);
+    }
+
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    /**
+     * Sets the maximum length of the applicationId of an access request in
+     * UTF-8 bytes, handled like {@link #setMaxCategoryLength(int)}; a skipped
+     * access request is not answered. Default is 65535. Takes effect on the
+     * next {@link #start()}.
+     *
+     * @param maxApplicationIdLength Length in bytes, 0 to 65535.
+     */
+    public void setMaxApplicationIdLength(int maxApplicationIdLength) {
+        this.maxApplicationIdLength = checkStringLimit("maxApplicationIdLength", maxApplicationIdLength);
+    }
+
+    public int getMaxApplicationIdLength() {
+        return maxApplicationIdLength;
+    }
+
+    private static int checkStringLimit(String name, int value) {
+        if (value < 0 || value > FrameLimits.MAX_STRING_LENGTH)
+            throw new IllegalArgumentException(name + " must be between 0 and " + FrameLimits.MAX_STRING_LENGTH
+                    + " (" + value + ")");
+        return value;
+    }
+
+    /**
+     * Sets the maximum number of bytes of an incomplete message buffered per
+     * connection. A message which would need more is skipped as it arrives
+     * and counted in {@link ServerStats#getOversizedFrameCount()}. Default is
+     * 131079, the length of the longest message the protocol allows. Takes
+     * effect on the next {@link #start()}.
+     *
+     * @param maxPendingBytes Number of bytes, larger than 0.
+     */
+    public void setMaxPendingBytes(int maxPendingBytes) {
+        if (maxPendingBytes < 1)
+            throw new IllegalArgumentException("maxPendingBytes must be larger than 0 (" + maxPendingBytes + ")");
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    public int getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
     public void setFlexPolicyResponse(final File file)
             throws IOException {
+        setFlexPolicyResponse(readFile(file));
+    }
+
+    private static String readFile(File file) throws IOException {
         Reader reader = new FileReader(file);
         try {
             StringBuilder sb = new StringBuilder();
@@ -141,7 +497,7 @@ public class SLF4FxServer {
             while ((size = reader.read(buffer)) != -1) {
                 sb.append(buffer, 0, size);
             }
-            setFlexPolicyResponse(sb.toString());
+            return sb.toString();
         }
         finally {
             try {
@@ -153,19 +509,69 @@ public class SLF4FxServer {
         }
     }
 
+    /**
+     * Sets the Flash socket policy file. May be called on a running server,
+     * the new policy is served right away.
+     */
     public void setFlexPolicyResponse(final String flexPolicyResponse) {
-        this.flexPolicyResponse = flexPolicyResponse;
+        synchronized (configLock) {
+            setConfig(config.get().withFlexPolicyResponse(flexPolicyResponse));
+        }
     }
 
     public String getFlexPolicyResponse() {
-        return flexPolicyResponse;
+        return config.get().getFlexPolicyResponse();
     }
 
+    /**
+     * Sets a fixed size of the buffer each read from a connection goes into.
+     * By default the size adapts to the traffic of each connection, see
+     * {@link #setReaderBufferSize(int, int, int)}. Applies to connections
+     * accepted afterwards.
+     *
+     * @param readerBufferSize Buffer size in bytes, larger than 0.
+     */
     public void setReaderBufferSize(final int readerBufferSize) {
+        if (readerBufferSize < 1)
+            throw new IllegalArgumentException("readerBufferSize must be larger than 0 (" + readerBufferSize + ")");
+        this.readerBufferSize = readerBufferSize;
     }
 
+    /**
+     * Makes the size of the buffer each read from a connection goes into
+     * adapt to the traffic of the connection: it grows quickly when reads
+     * fill the buffer and shrinks slowly when they do not. This is the
+     * default, with a range of 64 to 65536 bytes starting at 1024. Applies to
+     * connections accepted afterwards.
+     *
+     * @param minimum Smallest buffer size in bytes, larger than 0.
+     * @param initial Size of the first buffer, between minimum and maximum.
+     * @param maximum Largest buffer size in bytes.
+     */
+    public void setReaderBufferSize(final int minimum, final int initial, final int maximum) {
+        if (minimum < 1)
+            throw new IllegalArgumentException("minimum must be larger than 0 (" + minimum + ")");
+        if (initial < minimum || maximum < initial)
+            throw new IllegalArgumentException("minimum <= initial <= maximum must hold (" + minimum + ", "
+                    + initial + ", " + maximum + ")");
+        this.readerBufferSize = 0;
+        this.readerBufferMinimum = minimum;
+        this.readerBufferInitial = initial;
+        this.readerBufferMaximum = maximum;
+    }
+
+    /**
+     * @return Fixed size of the read buffer or, if it adapts to the traffic,
+     * its initial size.
+     */
     public int getReaderBufferSize() {
-        return 1024;
+        return readerBufferSize > 0 ? readerBufferSize : readerBufferInitial;
+    }
+
+    private RecvByteBufAllocator newRecvByteBufAllocator() {
+        if (readerBufferSize > 0)
+            return new FixedRecvByteBufAllocator(readerBufferSize);
+        return new AdaptiveRecvByteBufAllocator(readerBufferMinimum, readerBufferInitial, readerBufferMaximum);
     }
 
     /**
@@ -173,15 +579,321 @@ public class SLF4FxServer {
      * {@code slf4fx}. Do not include a dot at the end.
      * <p/>
      * If null, no prefix apart from the application name is used.
+     * <p/>
+     * May be called on a running server, records written afterwards use
+     * the new prefix.
      *
      * @param prefix Logging category prefix without the following dot.
      */
     public void setCategoryPrefix(String prefix) {
-        this.categoryPrefix = prefix;
+        synchronized (configLock) {
+            setConfig(config.get().withCategoryPrefix(prefix));
+        }
     }
 
     public String getCategoryPrefix() {
-        return categoryPrefix;
+        return config.get().getCategoryPrefix();
+    }
+
+    /**
+     * Sets minimum levels of log records to accept. Names are matched like
+     * logger names, without the category prefix: the empty name applies to
+     * all records, {@code <applicationId>} to the records of an application
+     * and {@code <applicationId>.<category>} to those of its categories
+     * starting with the given one. The longest matching name wins; records
+     * matching no name are all accepted. Default is none.
+     * <p/>
+     * Records below their minimum level are skipped by the decoder as they
+     * arrive, before anything is decoded. Until an application has been
+     * identified on a connection only the level under the empty name applies.
+     * May be called on a running server, records received afterwards are
+     * filtered by the new levels.
+     *
+     * @param levels minimum levels by name, neither of which may be null.
+     */
+    public void setLevels(Map<String, LogRecord.Level> levels) {
+        if (levels == null)
+            throw new NullPointerException("levels");
+        for (Map.Entry<String, LogRecord.Level> entry : levels.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null)
+                throw new IllegalArgumentException("Each level must have a non-null name and level");
+        }
+        synchronized (configLock) {
+            setConfig(config.get().withLevels(levels));
+        }
+    }
+
+    public Map<String, LogRecord.Level> getLevels() {
+        return config.get().getLevelFilter().getLevels();
+    }
+
+    /**
+     * Sets a properties file from which the category prefix, credentials and
+     * policy file are loaded by {@link #start()} and reloaded whenever the file
+     * changes, without dropping any connection. Understood keys:
+     * <ul>
+     * <li>{@code categoryPrefix}, empty for none;
+     * <li>{@code flexPolicyResponseFile}, path of the policy file, relative
+     * to the directory of the properties file;
+     * <li>{@code credential.<applicationId>} = secret, see {@link #setCredentials(Map)};
+     * <li>{@code level} and {@code level.<name>} = minimum level, see {@link #setLevels(Map)}.
+     * </ul>
+     * Settings missing from the file keep their current values; credentials
+     * and levels are each replaced as a whole if the file has at least one. A file which
+     * cannot be read is logged and the current settings are kept. Default is
+     * null, which disables the file. Takes effect on the next {@link #start()}.
+     *
+     * @param configFile properties file, or null.
+     */
+    public void setConfigFile(File configFile) {
+        this.configFile = configFile;
+    }
+
+    public File getConfigFile() {
+        return configFile;
+    }
+
+    /**
+     * @return Version of the reloadable settings, incremented on every change.
+     */
+    public long getConfigVersion() {
+        return config.get().getVersion();
+    }
+
+    private void setConfig(ServerConfig next) {
+        ServerConfig previous = config.getAndSet(next);
+        LoggerCache cache = loggerCache;
+        if (cache != null && !equals(previous.getCategoryPrefix(), next.getCategoryPrefix()))
+            cache.setCategoryPrefix(next.getCategoryPrefix());
+        log.debug("Configuration version {} applied", next.getVersion());
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void reloadConfigFile() throws IOException {
+        File file = configFile;
+        Properties properties = new Properties();
+        Reader reader = new FileReader(file);
+        try {
+            properties.load(reader);
+        }
+        finally {
+            reader.close();
+        }
+
+        String flexPolicyResponse = null;
+        String flexPolicyResponseFile = properties.getProperty("flexPolicyResponseFile");
+        if (flexPolicyResponseFile != null) {
+            File policyFile = new File(flexPolicyResponseFile);
+            if (!policyFile.isAbsolute())
+                policyFile = new File(file.getAbsoluteFile().getParentFile(), flexPolicyResponseFile);
+            flexPolicyResponse = readFile(policyFile);
+        }
+        Map<String, String> credentials = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(CREDENTIAL_PREFIX))
+                credentials.put(name.substring(CREDENTIAL_PREFIX.length()), properties.getProperty(name));
+        }
+        Map<String, LogRecord.Level> levels = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.equals(LEVEL_KEY) || name.startsWith(LEVEL_KEY + '.')) {
+                String level = properties.getProperty(name).trim().toUpperCase(Locale.ROOT);
+                try {
+                    levels.put(name.substring(Math.min(name.length(), LEVEL_KEY.length() + 1)),
+                            LogRecord.Level.valueOf(level));
+                }
+                catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown level of " + name + ": " + level);
+                }
+            }
+        }
+
+        synchronized (configLock) {
+            ServerConfig next = config.get();
+            String categoryPrefix = properties.getProperty("categoryPrefix");
+            if (categoryPrefix != null)
+                next = next.withCategoryPrefix(categoryPrefix.isEmpty() ? null : categoryPrefix);
+            if (!credentials.isEmpty())
+                next = next.withCredentials(credentials);
+            if (flexPolicyResponseFile != null)
+                next = next.withFlexPolicyResponse(flexPolicyResponse);
+            if (!levels.isEmpty())
+                next = next.withLevels(levels);
+            setConfig(next);
+        }
+        log.info("Loaded {}, configuration version {}", file, getConfigVersion());
+    }
+
+    /**
+     * Enables a dedicated listener serving only the Flash socket policy file,
+     * usually on port 843 where Flash looks for it first. The listener has its
+     * own event loops and closes each connection right after writing the
+     * policy, so policy fetches do not compete with log ingestion. Policy
+     * file requests are still answered on the main address as well.
+     * Default is null, which disables the listener. Takes effect on the next
+     * {@link #start()}.
+     *
+     * @param policyServerAddress address to listen on, or null.
+     * @see #setFlexPolicyResponse(String)
+     */
+    public void setPolicyServerAddress(SocketAddress policyServerAddress) {
+        this.policyServerAddress = policyServerAddress;
+    }
+
+    public SocketAddress getPolicyServerAddress() {
+        return policyServerAddress;
+    }
+
+    /**
+     * Sets the number of I/O threads of the policy file listener. Default is 1.
+     * Takes effect on the next {@link #start()}.
+     *
+     * @param policyServerWorkersCount number of threads, larger than 0.
+     * @see #setPolicyServerAddress(SocketAddress)
+     */
+    public void setPolicyServerWorkersCount(int policyServerWorkersCount) {
+        if (policyServerWorkersCount < 1)
+            throw new IllegalArgumentException("policyServerWorkersCount must be larger than 0 ("
+                    + policyServerWorkersCount + ")");
+        this.policyServerWorkersCount = policyServerWorkersCount;
+    }
+
+    public int getPolicyServerWorkersCount() {
+        return policyServerWorkersCount;
+    }
+
+    /**
+     * Sets the destination of received log records. Default is null, which
+     * forwards records to SLF4J loggers named after {@link #setCategoryPrefix(String) categoryPrefix},
+     * applicationId and category, as a {@link Slf4jLogSink} does. The sink is
+     * opened by {@link #start()} and closed by {@link #stop()}. Takes effect on
+     * the next {@link #start()}.
+     *
+     * @param logSink thread-safe sink, or null.
+     */
+    public void setLogSink(LogSink logSink) {
+        this.logSink = logSink;
+    }
+
+    public LogSink getLogSink() {
+        return logSink;
+    }
+
+    /**
+     * Sets the maximum number of loggers cached by applicationId and category
+     * when no {@link #setLogSink(LogSink) log sink} is set. Default is 4096.
+     * Takes effect on the next {@link #start()}.
+     *
+     * @param loggerCacheCapacity Maximum number of cached loggers, larger than 0.
+     */
+    public void setLoggerCacheCapacity(int loggerCacheCapacity) {
+        if (loggerCacheCapacity < 1)
+            throw new IllegalArgumentException("loggerCacheCapacity must be larger than 0 (" + loggerCacheCapacity + ")");
+        this.loggerCacheCapacity = loggerCacheCapacity;
+    }
+
+    public int getLoggerCacheCapacity() {
+        return loggerCacheCapacity;
+    }
+
+    /**
+     * @return Number of log records whose logger was found in the cache since
+     * the last {@link #start()}.
+     */
+    public long getLoggerCacheHitCount() {
+        LoggerCache cache = loggerCache;
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    /**
+     * @return Number of log records whose logger had to be looked up in
+     * {@link LoggerFactory} since the last {@link #start()}.
+     */
+    public long getLoggerCacheMissCount() {
+        LoggerCache cache = loggerCache;
+        return cache != null ? cache.getMissCount() : 0;
+    }
+
+    /**
+     * Sets the number of threads writing log records to the log sink. With 0,
+     * the default, records are written directly on the I/O threads and a slow
+     * sink or appender stalls all channels of an event loop. With more threads
+     * records are queued and written asynchronously. Takes effect on the
+     * next {@link #start()}.
+     * <p/>
+     * Queued records have their messages decoded on the I/O thread before
+     * being queued. Otherwise each of them would hold on to the whole receive
+     * buffer it was decoded from until written, so a full queue could pin a
+     * receive buffer per record and force the decoder to copy instead of
+     * reusing its buffer. The price is decoding on the I/O threads, even for
+     * records the logging backend then discards.
+     *
+     * @param dispatchThreads Number of dispatch threads, 0 or more.
+     */
+    public void setDispatchThreads(int dispatchThreads) {
+        if (dispatchThreads < 0)
+            throw new IllegalArgumentException("dispatchThreads must not be negative (" + dispatchThreads + ")");
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    /**
+     * Sets the maximum number of log records queued for each dispatch thread.
+     * Default is 65536. Takes effect on the next {@link #start()}.
+     *
+     * @param dispatchQueueCapacity Queue capacity, larger than 0.
+     * @see #setDispatchThreads(int)
+     */
+    public void setDispatchQueueCapacity(int dispatchQueueCapacity) {
+        if (dispatchQueueCapacity < 1)
+            throw new IllegalArgumentException("dispatchQueueCapacity must be larger than 0 (" + dispatchQueueCapacity + ")");
+        this.dispatchQueueCapacity = dispatchQueueCapacity;
+    }
+
+    public int getDispatchQueueCapacity() {
+        return dispatchQueueCapacity;
+    }
+
+    /**
+     * Sets what happens to log records when a dispatch queue is full. Default
+     * is {@link OverflowPolicy#BLOCK}. Takes effect on the next {@link #start()}.
+     *
+     * @see #setDispatchThreads(int)
+     */
+    public void setDispatchOverflowPolicy(OverflowPolicy dispatchOverflowPolicy) {
+        if (dispatchOverflowPolicy == null)
+            throw new NullPointerException("dispatchOverflowPolicy");
+        this.dispatchOverflowPolicy = dispatchOverflowPolicy;
+    }
+
+    public OverflowPolicy getDispatchOverflowPolicy() {
+        return dispatchOverflowPolicy;
+    }
+
+    /**
+     * @return Number of log records discarded by the dispatch overflow policy
+     * since the last {@link #start()}.
+     */
+    public long getDispatchDroppedCount() {
+        AsyncLogDispatcher d = dispatcher;
+        return d != null ? d.getDroppedCount() : 0;
+    }
+
+    /**
+     * Returns a snapshot of the ingestion counters since the last {@link #start()}.
+     * The same counters are available over JMX while the server is running,
+     * see {@link SLF4FxServerMXBean}.
+     */
+    public ServerStats getStats() {
+        ServerMetrics m = metrics;
+        if (m == null)
+            m = new ServerMetrics();
+        return m.snapshot(getDispatchDroppedCount(), getLoggerCacheHitCount(), getLoggerCacheMissCount());
     }
 
     /**
@@ -190,45 +902,219 @@ public class SLF4FxServer {
      * {@link #stop()} will have no effect.
      */
     public synchronized void start() {
-        if (future != null) {
+        if (!futures.isEmpty()) {
             log.warn("This server instance was already started before.");
             return;
         }
 
-        bossGroup = new NioEventLoopGroup();
-        workerGroup = new NioEventLoopGroup();
+        try {
+            doStart();
+        }
+        catch (RuntimeException | Error e) {
+            // undo whatever has been started before the failure
+            try {
+                shutdown();
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                e.addSuppressed(ie);
+            }
+            catch (RuntimeException re) {
+                e.addSuppressed(re);
+            }
+            throw e;
+        }
+    }
+
+    private void doStart() {
+        if (configFile != null) {
+            try {
+                reloadConfigFile();
+                configFileWatcher = new ConfigFileWatcher(configFile, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            reloadConfigFile();
+                        }
+                        catch (IOException | RuntimeException e) {
+                            log.error("Cannot reload " + configFile + ", keeping the current configuration: "
+                                    + e.getMessage(), e);
+                        }
+                    }
+                });
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("Cannot load " + configFile + ": " + e.getMessage(), e);
+            }
+            configFileWatcher.start();
+        }
+
+        final LogSink sink;
+        if (logSink != null) {
+            loggerCache = null;
+            sink = logSink;
+        }
+        else {
+            synchronized (configLock) {
+                loggerCache = new LoggerCache(config.get().getCategoryPrefix(), loggerCacheCapacity);
+            }
+            sink = new Slf4jLogSink(loggerCache);
+        }
+        try {
+            sink.open();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Cannot open log sink: " + e.getMessage(), e);
+        }
+        activeLogSink = sink;
+        final ServerMetrics serverMetrics = new ServerMetrics();
+        metrics = serverMetrics;
+        if (dispatchThreads > 0) {
+            dispatcher = new AsyncLogDispatcher(sink, serverMetrics, dispatchThreads, dispatchQueueCapacity,
+                    dispatchOverflowPolicy);
+            dispatcher.start();
+        }
+        final AsyncLogDispatcher logDispatcher = dispatcher;
+        final FrameLimits frameLimits = new FrameLimits(maxCategoryLength, maxMessageLength, maxApplicationIdLength,
+                maxPendingBytes);
+        final RateLimiter rateLimiter = !rateLimits.isEmpty() || defaultRateLimit != null
+                ? new RateLimiter(rateLimits, defaultRateLimit) : null;
+
+        Transport transport = this.transport.resolve();
+        int acceptors = acceptorCount;
+        if (acceptors > 1 && transport != Transport.EPOLL) {
+            log.warn("Multiple acceptors require the epoll transport, using a single one");
+            acceptors = 1;
+        }
+        bossGroup = transport.newEventLoopGroup(acceptors);
+        workerGroup = transport.newEventLoopGroup(workersCount);
+        if (rateLimiter != null) {
+            workerGroup.scheduleAtFixedRate(rateLimiter, RATE_LIMIT_SUMMARY_INTERVAL, RATE_LIMIT_SUMMARY_INTERVAL,
+                    TimeUnit.SECONDS);
+        }
+
+        final AdmissionHandler admissionHandler = maxConnections > 0 || maxConnectionsPerAddress > 0
+                || acceptRateLimit != null
+                ? new AdmissionHandler(serverMetrics, maxConnections, maxConnectionsPerAddress, acceptRateLimit)
+                : null;
 
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         serverBootstrap
                 .group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .handler(new LoggingHandler(LogLevel.INFO))
+                .channel(transport.serverChannelClass())
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) throws Exception {
+                        // ahead of the acceptor, so that shed connections never get a pipeline
+                        if (admissionHandler != null) {
+                            ch.pipeline().addLast(admissionHandler);
+                        }
+                        ch.pipeline().addLast(new LoggingHandler(LogLevel.INFO));
+                    }
+                })
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) throws Exception {
                         final Map<String, Object> parameters = new HashMap<>();
-                        parameters.put("policy-file-response", flexPolicyResponse);
+                        parameters.put("handshake-timeout", handshakeTimeout);
                         ChannelPipeline p = ch.pipeline();
-                        p.addLast(new InboundMessageDecoder());
-                        p.addLast(new OutboundMessageEncoder());
+                        if (sessionTimeout > 0) {
+                            p.addLast(new IdleStateHandler(sessionTimeout, 0, 0, TimeUnit.SECONDS));
+                        }
+                        p.addLast(new InboundMessageDecoder(serverMetrics, frameLimits, config));
+                        if (duplicateSuppressionWindow > 0) {
+                            p.addLast(new DuplicateSuppressionHandler(serverMetrics, duplicateSuppressionWindow));
+                        }
 
-                        p.addLast(new MessageHandler(SLF4FxServer.this.categoryPrefix, SLF4FxServer.this.credentials,
-                                Collections.unmodifiableMap(parameters)));
+                        p.addLast(new MessageHandler(sink, logDispatcher, serverMetrics, rateLimiter,
+                                config, Collections.unmodifiableMap(parameters)));
                     }
                 })
-                .option(ChannelOption.SO_BACKLOG, 128)
+                .option(ChannelOption.SO_BACKLOG, backlog)
                 .option(ChannelOption.SO_REUSEADDR, true)
                 .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.RCVBUF_ALLOCATOR, newRecvByteBufAllocator());
+        BootstrapOptions.apply(serverBootstrap, serverBootstrapOptions);
+        if (acceptors > 1) {
+            serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+
+        for (int i = 0; i < acceptors; i++) {
+            ChannelFuture future = serverBootstrap.bind(localAddress);
+            futures.add(future);
+            future.awaitUninterruptibly();
+            assert future.isDone();
+            if (future.isCancelled()) {
+                log.error("Binding to {} cancelled", localAddress);
+            }
+            else if (!future.isSuccess()) {
+                log.error("Binding to {} failed", localAddress);
+            }
+        }
+
+        if (policyServerAddress != null) {
+            startPolicyServer(transport);
+        }
+
+        registerMBean();
+    }
+
+    private void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mbeanName = new ObjectName("io.github.lkowalczyk.slf4fx:type=SLF4FxServer,name="
+                    + ObjectName.quote(String.valueOf(localAddress)));
+            server.registerMBean(new Management(), mbeanName);
+        }
+        catch (JMException e) {
+            log.warn("Cannot register MBean {}: {}", mbeanName, e.getMessage());
+            mbeanName = null;
+        }
+    }
+
+    private void unregisterMBean() {
+        if (mbeanName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        }
+        catch (JMException e) {
+            log.warn("Cannot unregister MBean {}: {}", mbeanName, e.getMessage());
+        }
+        mbeanName = null;
+    }
+
+    private void startPolicyServer(Transport transport) {
+        policyBossGroup = transport.newEventLoopGroup(1);
+        policyWorkerGroup = transport.newEventLoopGroup(policyServerWorkersCount);
+
+        ServerBootstrap serverBootstrap = new ServerBootstrap();
+        serverBootstrap
+                .group(policyBossGroup, policyWorkerGroup)
+                .channel(transport.serverChannelClass())
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ChannelPipeline p = ch.pipeline();
+                        if (handshakeTimeout > 0) {
+                            p.addLast(new ReadTimeoutHandler(handshakeTimeout));
+                        }
+                        p.addLast(new PolicyFileHandler(config));
+                    }
+                })
+                .option(ChannelOption.SO_BACKLOG, 128)
+                .option(ChannelOption.SO_REUSEADDR, true)
                 .childOption(ChannelOption.TCP_NODELAY, true);
 
-        future = serverBootstrap.bind(localAddress);
-        future.awaitUninterruptibly();
-        assert future.isDone();
-        if (future.isCancelled()) {
-            log.error("Binding to {} cancelled", localAddress);
+        policyFuture = serverBootstrap.bind(policyServerAddress);
+        policyFuture.awaitUninterruptibly();
+        if (policyFuture.isCancelled()) {
+            log.error("Binding to {} cancelled", policyServerAddress);
         }
-        else if (!future.isSuccess()) {
-            log.error("Binding to {} failed", localAddress);
+        else if (!policyFuture.isSuccess()) {
+            log.error("Binding to {} failed", policyServerAddress);
         }
     }
 
@@ -237,12 +1123,94 @@ public class SLF4FxServer {
      * no effect, as well as calling it again.
      */
     public synchronized void stop() throws InterruptedException {
-        if (future != null) {
+        if (!futures.isEmpty()) {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops whatever has been started, in the order that keeps the
+     * {@link LogSink} contract: the event loops are terminated first, so
+     * that no channel dispatches or writes records anymore, then the
+     * dispatcher is drained and the sink closed, and the config file
+     * watcher goes last.
+     */
+    private void shutdown() throws InterruptedException {
+        unregisterMBean();
+        for (ChannelFuture future : futures) {
             future.channel().close();
-            bossGroup.shutdownGracefully();
-            workerGroup.shutdownGracefully();
-            future.channel().closeFuture().sync();
-            future = null;
+        }
+        futures.clear();
+        if (policyFuture != null) {
+            policyFuture.channel().close();
+            policyFuture = null;
+        }
+        List<Future<?>> terminations = new ArrayList<>();
+        for (EventLoopGroup group : new EventLoopGroup[] { bossGroup, workerGroup, policyBossGroup,
+                policyWorkerGroup }) {
+            if (group != null)
+                terminations.add(group.shutdownGracefully());
+        }
+        bossGroup = null;
+        workerGroup = null;
+        policyBossGroup = null;
+        policyWorkerGroup = null;
+        for (Future<?> termination : terminations) {
+            termination.sync();
+        }
+        if (dispatcher != null) {
+            dispatcher.stop();
+            dispatcher = null;
+        }
+        if (activeLogSink != null) {
+            try {
+                activeLogSink.close();
+            }
+            catch (Exception e) {
+                log.error("Cannot close log sink: " + e.getMessage(), e);
+            }
+            activeLogSink = null;
+        }
+        if (configFileWatcher != null) {
+            configFileWatcher.stop();
+            configFileWatcher = null;
+        }
+    }
+
+    private final class Management implements SLF4FxServerMXBean {
+        @Override
+        public ServerStats getStats() {
+            return SLF4FxServer.this.getStats();
+        }
+
+        @Override
+        public long getRecordCount() {
+            return getStats().getRecordCount();
+        }
+
+        @Override
+        public long getActiveChannelCount() {
+            return getStats().getActiveChannelCount();
+        }
+
+        @Override
+        public long getDecodeErrorCount() {
+            return getStats().getDecodeErrorCount();
+        }
+
+        @Override
+        public long getRejectedAccessRequestCount() {
+            return getStats().getRejectedAccessRequestCount();
+        }
+
+        @Override
+        public long getRejectedConnectionCount() {
+            return getStats().getRejectedConnectionCount();
+        }
+
+        @Override
+        public long getDroppedRecordCount() {
+            return getDispatchDroppedCount();
         }
     }
 }
@@ -0,0 +1,26 @@
+package io.github.lkowalczyk.slf4fx;
+
+/**
+ * Management interface of a running {@link SLF4FxServer}, registered with
+ * the platform MBean server under
+ * {@code io.github.lkowalczyk.slf4fx:type=SLF4FxServer,name="<local address>"}.
+ * The single counts duplicate the {@link #getStats() snapshot} for
+ * consoles that chart simple attributes only.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public interface SLF4FxServerMXBean {
+    ServerStats getStats();
+
+    long getRecordCount();
+
+    long getActiveChannelCount();
+
+    long getDecodeErrorCount();
+
+    long getRejectedAccessRequestCount();
+
+    long getRejectedConnectionCount();
+
+    long getDroppedRecordCount();
+}
@@ -0,0 +1,103 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.github.lkowalczyk.slf4fx.message.PolicyFileResponse;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the settings which can be changed while the server
+ * is running. All pipelines read the current snapshot through one shared
+ * reference on every use, so a change is seen by existing connections as
+ * well. Each change produces a new snapshot with a higher version; derived
+ * state, the encoded policy file, the credential digests and the level
+ * filter, is built once per snapshot.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class ServerConfig {
+    static final ServerConfig INITIAL = new ServerConfig(0, "slf4fx", Collections.<String, String>emptyMap(),
+            CredentialIndex.OPEN, null, new PolicyFileResponse(null).toSharedBuffer(), LevelFilter.NONE);
+
+    private final long version;
+    private final String categoryPrefix;
+    private final Map<String, String> credentials;
+    private final CredentialIndex credentialIndex;
+    private final String flexPolicyResponse;
+    private final ByteBuf flexPolicyResponseBuffer;
+    private final LevelFilter levelFilter;
+
+    private ServerConfig(long version, String categoryPrefix, Map<String, String> credentials,
+                         CredentialIndex credentialIndex, String flexPolicyResponse, ByteBuf flexPolicyResponseBuffer,
+                         LevelFilter levelFilter) {
+        this.version = version;
+        this.categoryPrefix = categoryPrefix;
+        this.credentials = credentials;
+        this.credentialIndex = credentialIndex;
+        this.flexPolicyResponse = flexPolicyResponse;
+        this.flexPolicyResponseBuffer = flexPolicyResponseBuffer;
+        this.levelFilter = levelFilter;
+    }
+
+    public ServerConfig withCategoryPrefix(String categoryPrefix) {
+        return new ServerConfig(version + 1, categoryPrefix, credentials, credentialIndex, flexPolicyResponse,
+                flexPolicyResponseBuffer, levelFilter);
+    }
+
+    /**
+     * @param credentials Validated applicationId-secret pairs.
+     */
+    public ServerConfig withCredentials(Map<String, String> credentials) {
+        Map<String, String> copy = Collections.unmodifiableMap(new HashMap<>(credentials));
+        return new ServerConfig(version + 1, categoryPrefix, copy, new CredentialIndex(copy), flexPolicyResponse,
+                flexPolicyResponseBuffer, levelFilter);
+    }
+
+    public ServerConfig withFlexPolicyResponse(String flexPolicyResponse) {
+        return new ServerConfig(version + 1, categoryPrefix, credentials, credentialIndex, flexPolicyResponse,
+                new PolicyFileResponse(flexPolicyResponse).toSharedBuffer(), levelFilter);
+    }
+
+    /**
+     * @param levels Validated minimum levels, see {@link LevelFilter}.
+     */
+    public ServerConfig withLevels(Map<String, LogRecord.Level> levels) {
+        return new ServerConfig(version + 1, categoryPrefix, credentials, credentialIndex, flexPolicyResponse,
+                flexPolicyResponseBuffer, new LevelFilter(levels));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getCategoryPrefix() {
+        return categoryPrefix;
+    }
+
+    public Map<String, String> getCredentials() {
+        return credentials;
+    }
+
+    public CredentialIndex getCredentialIndex() {
+        return credentialIndex;
+    }
+
+    public String getFlexPolicyResponse() {
+        return flexPolicyResponse;
+    }
+
+    /**
+     * @return The encoded policy file as a shared buffer, to be written as a
+     * {@link ByteBuf#duplicate() duplicate}.
+     */
+    public ByteBuf getFlexPolicyResponseBuffer() {
+        return flexPolicyResponseBuffer;
+    }
+
+    public LevelFilter getLevelFilter() {
+        return levelFilter;
+    }
+}
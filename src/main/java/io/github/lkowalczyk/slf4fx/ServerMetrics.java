@@ -0,0 +1,195 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.MessageType;
+
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Live ingestion counters of a running server. An instance is shareable
+ * among pipelines; all updates are striped so that event loops do not
+ * contend on them. Per-connection counters are kept only while their
+ * connections are active.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+class ServerMetrics {
+    /** Applications counted separately, the rest are summed up under {@link #OTHER_APPLICATIONS}. */
+    static final int MAX_APPLICATIONS = 1024;
+    static final String OTHER_APPLICATIONS = "(other)";
+
+    /**
+     * Latency histogram buckets: bucket {@code i} counts latencies below
+     * {@code 2^(i + MIN_LATENCY_SHIFT)} ns, the last one everything above.
+     */
+    static final int MIN_LATENCY_SHIFT = 10; // ~1 us
+    static final int LATENCY_BUCKETS = 25;   // up to ~17 s
+
+    private final MessageType[] types = MessageType.values();
+    private final StripedCounter[] frames = newCounters(types.length);
+    private final StripedCounter[] bytes = newCounters(types.length);
+    private final StripedCounter records = new StripedCounter();
+    private final StripedCounter decodeErrors = new StripedCounter();
+    private final StripedCounter malformedMessages = new StripedCounter();
+    private final StripedCounter oversizedFrames = new StripedCounter();
+    private final StripedCounter rejectedAccessRequests = new StripedCounter();
+    private final StripedCounter rateLimitedRecords = new StripedCounter();
+    private final StripedCounter suppressedDuplicates = new StripedCounter();
+    private final StripedCounter filteredRecords = new StripedCounter();
+    private final StripedCounter rejectedConnections = new StripedCounter();
+    private final StripedCounter acceptedChannels = new StripedCounter();
+    private final StripedCounter activeChannels = new StripedCounter();
+    private final StripedCounter[] latency = newCounters(LATENCY_BUCKETS);
+    private final ConcurrentMap<String, StripedCounter> applications = new ConcurrentHashMap<>();
+    private final StripedCounter otherApplications = new StripedCounter();
+    private final ConcurrentMap<SocketAddress, StripedCounter> connections = new ConcurrentHashMap<>();
+
+    private static StripedCounter[] newCounters(int count) {
+        StripedCounter[] counters = new StripedCounter[count];
+        for (int i = 0; i < count; i++) {
+            counters[i] = new StripedCounter();
+        }
+        return counters;
+    }
+
+    public void framesDecoded(MessageType type, int count, long length) {
+        frames[type.ordinal()].add(count);
+        bytes[type.ordinal()].add(length);
+    }
+
+    public void decodeError() {
+        decodeErrors.increment();
+    }
+
+    public void malformedMessage() {
+        malformedMessages.increment();
+    }
+
+    public void oversizedFrame() {
+        oversizedFrames.increment();
+    }
+
+    public void accessRejected() {
+        rejectedAccessRequests.increment();
+    }
+
+    public void recordRateLimited() {
+        rateLimitedRecords.increment();
+    }
+
+    public void duplicateSuppressed() {
+        suppressedDuplicates.increment();
+    }
+
+    public void recordsFiltered(int count) {
+        filteredRecords.add(count);
+    }
+
+    public void connectionRejected() {
+        rejectedConnections.increment();
+    }
+
+    /**
+     * Counts a new connection.
+     *
+     * @return Counter of records received over the connection, to be passed
+     *  to {@link #recordReceived(StripedCounter, StripedCounter)}.
+     */
+    public StripedCounter channelActive(SocketAddress remoteAddress) {
+        acceptedChannels.increment();
+        activeChannels.increment();
+        StripedCounter counter = new StripedCounter();
+        if (remoteAddress != null)
+            connections.put(remoteAddress, counter);
+        return counter;
+    }
+
+    public void channelInactive(SocketAddress remoteAddress) {
+        activeChannels.add(-1);
+        if (remoteAddress != null)
+            connections.remove(remoteAddress);
+    }
+
+    /**
+     * Returns the counter of records received from an application. Meant to
+     * be looked up once per connection, when access is granted.
+     */
+    public StripedCounter applicationCounter(String applicationId) {
+        StripedCounter counter = applications.get(applicationId);
+        if (counter != null)
+            return counter;
+        if (applications.size() >= MAX_APPLICATIONS)
+            return otherApplications;
+        counter = new StripedCounter();
+        StripedCounter existing = applications.putIfAbsent(applicationId, counter);
+        return existing != null ? existing : counter;
+    }
+
+    /**
+     * Counts a record accepted from an application.
+     *
+     * @param application counter from {@link #applicationCounter(String)}.
+     * @param connection  counter from {@link #channelActive(SocketAddress)}.
+     */
+    public void recordReceived(StripedCounter application, StripedCounter connection) {
+        records.increment();
+        application.increment();
+        connection.increment();
+    }
+
+    /**
+     * Records the time the entries of a batch spent between being received
+     * and being handed over to the sink.
+     */
+    public void recordsWritten(List<LogEntry> batch) {
+        long now = System.nanoTime();
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            latency[latencyBucket(now - batch.get(i).getRecord().getReceivedNanos())].increment();
+        }
+    }
+
+    static int latencyBucket(long nanos) {
+        if (nanos <= 0)
+            return 0;
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos) - MIN_LATENCY_SHIFT;
+        return bucket < 0 ? 0 : bucket >= LATENCY_BUCKETS ? LATENCY_BUCKETS - 1 : bucket;
+    }
+
+    /**
+     * @param droppedRecords records discarded by the dispatch stage, counted there.
+     */
+    public ServerStats snapshot(long droppedRecords, long loggerCacheHits, long loggerCacheMisses) {
+        Map<String, Long> framesByType = new LinkedHashMap<>();
+        Map<String, Long> bytesByType = new LinkedHashMap<>();
+        for (MessageType type : types) {
+            if (type == MessageType.UNKNOWN || type == MessageType.ACCESS_RESPONSE)
+                continue;
+            framesByType.put(type.name(), frames[type.ordinal()].sum());
+            bytesByType.put(type.name(), bytes[type.ordinal()].sum());
+        }
+        Map<String, Long> recordsByApplication = new LinkedHashMap<>();
+        for (Map.Entry<String, StripedCounter> entry : applications.entrySet()) {
+            recordsByApplication.put(entry.getKey(), entry.getValue().sum());
+        }
+        long other = otherApplications.sum();
+        if (other > 0)
+            recordsByApplication.put(OTHER_APPLICATIONS, other);
+        Map<String, Long> recordsByConnection = new LinkedHashMap<>();
+        for (Map.Entry<SocketAddress, StripedCounter> entry : connections.entrySet()) {
+            recordsByConnection.put(entry.getKey().toString(), entry.getValue().sum());
+        }
+        long[] latencyHistogram = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            latencyHistogram[i] = latency[i].sum();
+        }
+        return new ServerStats(System.currentTimeMillis(), framesByType, bytesByType, records.sum(),
+                decodeErrors.sum(), malformedMessages.sum(), oversizedFrames.sum(), rejectedAccessRequests.sum(),
+                rateLimitedRecords.sum(), suppressedDuplicates.sum(), filteredRecords.sum(), rejectedConnections.sum(),
+                acceptedChannels.sum(), activeChannels.sum(), droppedRecords, recordsByApplication, recordsByConnection,
+                latencyHistogram, loggerCacheHits, loggerCacheMisses);
+    }
+}
@@ -0,0 +1,239 @@
+package io.github.lkowalczyk.slf4fx;
+
+import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A point-in-time snapshot of the ingestion counters of an {@link SLF4FxServer}.
+ * All counts are totals since the server was last started; rates are
+ * obtained by comparing two snapshots over their {@link #getTimestamp() timestamps}.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ * @see SLF4FxServer#getStats()
+ */
+public final class ServerStats {
+    private final long timestamp;
+    private final Map<String, Long> framesByType;
+    private final Map<String, Long> bytesByType;
+    private final long recordCount;
+    private final long decodeErrorCount;
+    private final long malformedMessageCount;
+    private final long oversizedFrameCount;
+    private final long rejectedAccessRequestCount;
+    private final long rateLimitedRecordCount;
+    private final long suppressedDuplicateCount;
+    private final long filteredRecordCount;
+    private final long rejectedConnectionCount;
+    private final long acceptedChannelCount;
+    private final long activeChannelCount;
+    private final long droppedRecordCount;
+    private final Map<String, Long> recordsByApplication;
+    private final Map<String, Long> recordsByConnection;
+    private final long[] latencyHistogram;
+    private final long loggerCacheHitCount;
+    private final long loggerCacheMissCount;
+
+    @ConstructorProperties({ "timestamp", "framesByType", "bytesByType", "recordCount", "decodeErrorCount",
+            "malformedMessageCount", "oversizedFrameCount", "rejectedAccessRequestCount", "rateLimitedRecordCount",
+            "suppressedDuplicateCount", "filteredRecordCount", "rejectedConnectionCount", "acceptedChannelCount",
+            "activeChannelCount", "droppedRecordCount", "recordsByApplication", "recordsByConnection",
+            "latencyHistogram", "loggerCacheHitCount", "loggerCacheMissCount" })
+    public ServerStats(long timestamp, Map<String, Long> framesByType, Map<String, Long> bytesByType,
+                       long recordCount, long decodeErrorCount, long malformedMessageCount,
+                       long oversizedFrameCount, long rejectedAccessRequestCount, long rateLimitedRecordCount,
+                       long suppressedDuplicateCount, long filteredRecordCount, long rejectedConnectionCount,
+                       long acceptedChannelCount, long activeChannelCount, long droppedRecordCount,
+                       Map<String, Long> recordsByApplication, Map<String, Long> recordsByConnection,
+                       long[] latencyHistogram, long loggerCacheHitCount, long loggerCacheMissCount) {
+        this.timestamp = timestamp;
+        this.framesByType = Collections.unmodifiableMap(new LinkedHashMap<>(framesByType));
+        this.bytesByType = Collections.unmodifiableMap(new LinkedHashMap<>(bytesByType));
+        this.recordCount = recordCount;
+        this.decodeErrorCount = decodeErrorCount;
+        this.malformedMessageCount = malformedMessageCount;
+        this.oversizedFrameCount = oversizedFrameCount;
+        this.rejectedAccessRequestCount = rejectedAccessRequestCount;
+        this.rateLimitedRecordCount = rateLimitedRecordCount;
+        this.suppressedDuplicateCount = suppressedDuplicateCount;
+        this.filteredRecordCount = filteredRecordCount;
+        this.rejectedConnectionCount = rejectedConnectionCount;
+        this.acceptedChannelCount = acceptedChannelCount;
+        this.activeChannelCount = activeChannelCount;
+        this.droppedRecordCount = droppedRecordCount;
+        this.recordsByApplication = Collections.unmodifiableMap(new LinkedHashMap<>(recordsByApplication));
+        this.recordsByConnection = Collections.unmodifiableMap(new LinkedHashMap<>(recordsByConnection));
+        this.latencyHistogram = latencyHistogram.clone();
+        this.loggerCacheHitCount = loggerCacheHitCount;
+        this.loggerCacheMissCount = loggerCacheMissCount;
+    }
+
+    /**
+     * @return Time the snapshot was taken, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Number of decoded messages by {@link io.github.lkowalczyk.slf4fx.message.MessageType} name.
+     */
+    public Map<String, Long> getFramesByType() {
+        return framesByType;
+    }
+
+    /**
+     * @return Number of bytes of decoded messages by {@link io.github.lkowalczyk.slf4fx.message.MessageType} name.
+     */
+    public Map<String, Long> getBytesByType() {
+        return bytesByType;
+    }
+
+    /**
+     * @return Number of log records accepted from granted connections.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return Number of connections dropped because their input could not be
+     * decoded, including {@link #getMalformedMessageCount() malformed messages}.
+     */
+    public long getDecodeErrorCount() {
+        return decodeErrorCount;
+    }
+
+    /**
+     * @return Number of messages rejected as malformed, e.g. with an unknown tag.
+     */
+    public long getMalformedMessageCount() {
+        return malformedMessageCount;
+    }
+
+    /**
+     * @return Number of frames skipped for breaking a length limit, see
+     * {@link SLF4FxServer#setMaxMessageLength(int)}.
+     */
+    public long getOversizedFrameCount() {
+        return oversizedFrameCount;
+    }
+
+    /**
+     * @return Number of access requests answered with a denial.
+     */
+    public long getRejectedAccessRequestCount() {
+        return rejectedAccessRequestCount;
+    }
+
+    /**
+     * @return Number of DEBUG and INFO records dropped by
+     * {@link SLF4FxServer#setRateLimits(Map) rate limits}.
+     */
+    public long getRateLimitedRecordCount() {
+        return rateLimitedRecordCount;
+    }
+
+    /**
+     * @return Number of repeated records folded into "repeated N times" records
+     * by {@link SLF4FxServer#setDuplicateSuppressionWindow(int) duplicate suppression}.
+     */
+    public long getSuppressedDuplicateCount() {
+        return suppressedDuplicateCount;
+    }
+
+    /**
+     * @return Number of records skipped undecoded for being below their
+     * {@link SLF4FxServer#setLevels(Map) minimum level}.
+     */
+    public long getFilteredRecordCount() {
+        return filteredRecordCount;
+    }
+
+    /**
+     * @return Number of connections closed right after being accepted, for
+     * exceeding the {@link SLF4FxServer#setMaxConnections(int) connection limits}
+     * or the {@link SLF4FxServer#setAcceptRateLimit(RateLimit) accept rate}.
+     */
+    public long getRejectedConnectionCount() {
+        return rejectedConnectionCount;
+    }
+
+    public long getAcceptedChannelCount() {
+        return acceptedChannelCount;
+    }
+
+    public long getActiveChannelCount() {
+        return activeChannelCount;
+    }
+
+    /**
+     * @return Number of log records discarded by the dispatch overflow policy.
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecordCount;
+    }
+
+    /**
+     * @return Number of log records by applicationId. Past the first 1024
+     * applications the rest are counted together under {@code (other)}.
+     */
+    public Map<String, Long> getRecordsByApplication() {
+        return recordsByApplication;
+    }
+
+    /**
+     * @return Number of log records by the remote address of each active
+     * connection. Closed connections are no longer listed.
+     */
+    public Map<String, Long> getRecordsByConnection() {
+        return recordsByConnection;
+    }
+
+    /**
+     * Returns the distribution of the time log records spent between being
+     * decoded and being handed over to the log sink. Bucket {@code i} counts
+     * records below {@link #getLatencyBucketLimitNanos(int)} and at or above the
+     * previous bucket's limit.
+     *
+     * @return A copy of the bucket counts.
+     */
+    public long[] getLatencyHistogram() {
+        return latencyHistogram.clone();
+    }
+
+    /**
+     * @return Exclusive upper limit of a {@link #getLatencyHistogram() latency bucket}
+     * in nanoseconds, {@link Long#MAX_VALUE} for the last one.
+     */
+    public static long getLatencyBucketLimitNanos(int bucket) {
+        if (bucket < 0 || bucket >= ServerMetrics.LATENCY_BUCKETS)
+            throw new IndexOutOfBoundsException("bucket (" + bucket + ")");
+        if (bucket == ServerMetrics.LATENCY_BUCKETS - 1)
+            return Long.MAX_VALUE;
+        return 1L << (bucket + ServerMetrics.MIN_LATENCY_SHIFT);
+    }
+
+    public long getLoggerCacheHitCount() {
+        return loggerCacheHitCount;
+    }
+
+    public long getLoggerCacheMissCount() {
+        return loggerCacheMissCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerStats [timestamp=" + timestamp + ", framesByType=" + framesByType + ", bytesByType="
+                + bytesByType + ", recordCount=" + recordCount + ", decodeErrorCount=" + decodeErrorCount
+                + ", malformedMessageCount=" + malformedMessageCount + ", oversizedFrameCount=" + oversizedFrameCount
+                + ", rejectedAccessRequestCount=" + rejectedAccessRequestCount + ", rateLimitedRecordCount="
+                + rateLimitedRecordCount + ", suppressedDuplicateCount=" + suppressedDuplicateCount
+                + ", filteredRecordCount=" + filteredRecordCount + ", rejectedConnectionCount="
+                + rejectedConnectionCount + ", acceptedChannelCount=" + acceptedChannelCount
+                + ", activeChannelCount=" + activeChannelCount
+                + ", droppedRecordCount=" + droppedRecordCount + ", recordsByApplication=" + recordsByApplication
+                + ", recordsByConnection=" + recordsByConnection + "]";
+    }
+}
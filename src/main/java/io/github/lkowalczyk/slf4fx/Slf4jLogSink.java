@@ -0,0 +1,81 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import org.slf4j.Logger;
+
+import java.util.List;
+
+/**
+ * Forwards records to SLF4J loggers named
+ * {@code <categoryPrefix>.<applicationId>.<category>}. This is the default
+ * {@link LogSink}.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public class Slf4jLogSink implements LogSink {
+    private final LoggerCache loggers;
+
+    /**
+     * @param categoryPrefix      Logging category prefix without the following dot,
+     *                            may be null.
+     * @param loggerCacheCapacity Maximum number of cached loggers, larger than 0.
+     */
+    public Slf4jLogSink(String categoryPrefix, int loggerCacheCapacity) {
+        this(new LoggerCache(categoryPrefix, loggerCacheCapacity));
+    }
+
+    Slf4jLogSink(LoggerCache loggers) {
+        this.loggers = loggers;
+    }
+
+    LoggerCache getLoggerCache() {
+        return loggers;
+    }
+
+    @Override
+    public void open() {
+    }
+
+    @Override
+    public void write(List<LogEntry> entries) {
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            LogEntry entry = entries.get(i);
+            LogRecord record = entry.getRecord();
+            forward(loggers.getLogger(entry.getApplicationId(), record.getCategory()), record);
+        }
+    }
+
+    @Override
+    public void close() {
+        loggers.clear();
+    }
+
+    /**
+     * Logs the record's message with the logger at the record's level. The
+     * message is only decoded if the level is enabled.
+     */
+    static void forward(Logger logger, LogRecord record) {
+        switch (record.getLevel()) {
+            case DEBUG:
+                if (logger.isDebugEnabled())
+                    logger.debug(record.getMessage());
+                break;
+
+            case WARN:
+                if (logger.isWarnEnabled())
+                    logger.warn(record.getMessage());
+                break;
+
+            case ERROR:
+                if (logger.isErrorEnabled())
+                    logger.error(record.getMessage());
+                break;
+
+            case INFO:
+            default:
+                if (logger.isInfoEnabled())
+                    logger.info(record.getMessage());
+                break;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.lkowalczyk.slf4fx;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A counter that is cheap to increment from many threads at once. Updates
+ * go to a single base field until two threads collide on it; from then on
+ * each thread updates one of several cells chosen by its id, padded so
+ * that they do not share cache lines. A counter only ever updated by one
+ * thread, e.g. one event loop, therefore takes no more than the base field.
+ * Reading the value sums the base and all cells and is only weakly
+ * consistent with concurrent updates.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class StripedCounter {
+    /** Longs per 64-byte cache line. */
+    private static final int PADDING = 8;
+    private static final int CELLS;
+
+    static {
+        int cells = 1;
+        while (cells < Runtime.getRuntime().availableProcessors() * 2) {
+            cells <<= 1;
+        }
+        CELLS = cells;
+    }
+
+    private static final AtomicLongFieldUpdater<StripedCounter> BASE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(StripedCounter.class, "base");
+    private static final AtomicReferenceFieldUpdater<StripedCounter, AtomicLongArray> CELLS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(StripedCounter.class, AtomicLongArray.class, "cells");
+
+    private volatile long base;
+    private volatile AtomicLongArray cells;
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        AtomicLongArray cells = this.cells;
+        if (cells == null) {
+            long base = this.base;
+            if (BASE_UPDATER.compareAndSet(this, base, base + delta))
+                return;
+            cells = inflate();
+        }
+        cells.getAndAdd(cellIndex(), delta);
+    }
+
+    public long sum() {
+        long sum = base;
+        AtomicLongArray cells = this.cells;
+        if (cells != null) {
+            for (int i = 0; i < CELLS; i++) {
+                sum += cells.get(i * PADDING);
+            }
+        }
+        return sum;
+    }
+
+    private AtomicLongArray inflate() {
+        AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+        return CELLS_UPDATER.compareAndSet(this, null, cells) ? cells : this.cells;
+    }
+
+    private static int cellIndex() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & (CELLS - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket of one application, implemented as the generic cell
+ * rate algorithm: the whole state is the theoretical arrival time of the
+ * next record, advanced with a compare-and-set. Shareable among event loops.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class TokenBucket {
+    private final String applicationId;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong arrival;
+    private final AtomicLong droppedDebug = new AtomicLong();
+    private final AtomicLong droppedInfo = new AtomicLong();
+
+    /**
+     * @param applicationId application the bucket limits, or null if it is
+     *                      not one of an application.
+     */
+    TokenBucket(String applicationId, RateLimit limit) {
+        this.applicationId = applicationId;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.getRecordsPerSecond()));
+        this.toleranceNanos = intervalNanos * limit.getBurst();
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    String getApplicationId() {
+        return applicationId;
+    }
+
+    /**
+     * Takes a token for a record of the given level, or counts it as dropped.
+     * Records above INFO are always accepted, although they do use up tokens.
+     *
+     * @return false if the record should be discarded.
+     */
+    boolean tryAcquire(LogRecord.Level level) {
+        if (tryAcquire())
+            return true;
+        switch (level) {
+            case DEBUG:
+                droppedDebug.incrementAndGet();
+                return false;
+
+            case INFO:
+                droppedInfo.incrementAndGet();
+                return false;
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Takes a token if there is one.
+     *
+     * @return false if the bucket is empty.
+     */
+    boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = arrival.get();
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            if (next - now > toleranceNanos)
+                return false;
+            if (arrival.compareAndSet(current, next))
+                return true;
+        }
+    }
+
+    /**
+     * @return DEBUG records dropped since the last call.
+     */
+    long drainDroppedDebug() {
+        return droppedDebug.getAndSet(0);
+    }
+
+    /**
+     * @return INFO records dropped since the last call.
+     */
+    long drainDroppedInfo() {
+        return droppedInfo.getAndSet(0);
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Network transport used by {@link SLF4FxServer}.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public enum Transport {
+    /**
+     * Java NIO, available everywhere.
+     */
+    NIO {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+
+        @Override
+        Class<? extends ServerSocketChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+    },
+
+    /**
+     * Netty's native epoll transport, available only on Linux. It has lower
+     * syscall overhead than NIO and supports {@code SO_REUSEPORT}.
+     */
+    EPOLL {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+
+        @Override
+        Class<? extends ServerSocketChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+    },
+
+    /**
+     * {@link #EPOLL} where available, otherwise {@link #NIO}.
+     */
+    AUTO {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads) {
+            return resolve().newEventLoopGroup(threads);
+        }
+
+        @Override
+        Class<? extends ServerSocketChannel> serverChannelClass() {
+            return resolve().serverChannelClass();
+        }
+    };
+
+    abstract EventLoopGroup newEventLoopGroup(int threads);
+
+    abstract Class<? extends ServerSocketChannel> serverChannelClass();
+
+    /**
+     * @return The concrete transport this one stands for.
+     */
+    Transport resolve() {
+        if (this != AUTO)
+            return this;
+        // the epoll event loop allocates its event array through Unsafe
+        return Epoll.isAvailable() && PlatformDependent.hasUnsafe() ? EPOLL : NIO;
+    }
+}
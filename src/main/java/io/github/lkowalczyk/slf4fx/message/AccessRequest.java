@@ -1,5 +1,6 @@
 package io.github.lkowalczyk.slf4fx.message;
 
+import io.netty.buffer.ByteBuf;
 
 public class AccessRequest extends InboundMessage
 {
@@ -12,6 +13,23 @@ public class AccessRequest extends InboundMessage
         return MessageType.ACCESS_REQUEST;
     }
 
+    /**
+     * Computes the length of the access request starting at the buffer's reader
+     * index by peeking at its length prefixes.
+     * 
+     * @return The length of the whole message in bytes, or {@link #INCOMPLETE}
+     *  if it has not been fully received yet.
+     */
+    public static int frameLength(ByteBuf buffer)
+    {
+        int start = buffer.readerIndex();
+        int offset = skipUTF(buffer, start + 1); // applicationId
+        if (offset == INCOMPLETE)
+            return INCOMPLETE;
+        offset = skipUTF(buffer, offset); // secret
+        return offset == INCOMPLETE ? INCOMPLETE : offset - start;
+    }
+
     @Override
     protected void doDecode()
         throws BufferUnderrunException
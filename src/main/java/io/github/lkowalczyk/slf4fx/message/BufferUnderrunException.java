@@ -3,12 +3,20 @@ package io.github.lkowalczyk.slf4fx.message;
 /**
  * Thrown when there is not enough data in a buffer to
  * construct a full message or a full part of it.
+ * <p>
+ * Running out of data is an expected outcome of decoding a fragmented
+ * stream rather than an error, so the exception carries no stack trace
+ * and the readers of {@link InboundMessage} throw the shared
+ * {@link #INSTANCE}.
  * 
  * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
  */
 public class BufferUnderrunException extends Exception
 {
+    public static final BufferUnderrunException INSTANCE = new BufferUnderrunException();
+    
     public BufferUnderrunException()
     {
+        super(null, null, false, false);
     }
 }
@@ -1,15 +1,6 @@
 package io.github.lkowalczyk.slf4fx.message;
 
 import io.netty.buffer.ByteBuf;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CodingErrorAction;
 
 /**
  * Base class for incoming messages.
@@ -18,8 +9,12 @@ import java.nio.charset.CodingErrorAction;
  */
 public abstract class InboundMessage
 {
-    private static final Logger log = LoggerFactory.getLogger(InboundMessage.class);
-    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * Returned by the {@code frameLength} methods of concrete messages when the
+     * buffer does not hold a complete message yet.
+     */
+    public static final int INCOMPLETE = -1;
+
     private ByteBuf buffer;
 
     /**
@@ -28,9 +23,9 @@ public abstract class InboundMessage
      * class.
      * <p>
      * If this method throws a checked exception the object is left in an undefined state
-     * and the buffer's mark is reset to its initial state as of entering this method.
+     * and the buffer's reader index is restored to its value as of entering this method.
      * <p>
-     * If this method throws an unchecked exception, the buffer mark is left in
+     * If this method throws an unchecked exception, the reader index is left in
      * a random position and the connection to the client should be closed.
      *  
      * @return A concrete InboundMessage descendant or null if a message is of
@@ -43,25 +38,45 @@ public abstract class InboundMessage
         if (buffer == null)
             throw new NullPointerException("buffer");
         if (!buffer.isReadable())
-            throw new BufferUnderrunException();
-        if (getType().getTag() != buffer.getUnsignedByte(0))
+            throw BufferUnderrunException.INSTANCE;
+        int start = buffer.readerIndex();
+        if (getType().getTag() != buffer.getUnsignedByte(start))
             return null;
         this.buffer = buffer;
-        buffer.markReaderIndex();
         try
         {
             doDecode();
         }
         catch (BufferUnderrunException | MalformedMessageException e)
         {
-            buffer.resetReaderIndex();
+            buffer.readerIndex(start);
             throw e;
         }
+        finally
+        {
+            this.buffer = null;
+        }
         return this;
     }
     
     protected abstract MessageType getType();
 
+    /**
+     * Peeks at the length prefix of a string written with ActionScript's
+     * Socket.writeUTF method. The buffer's indexes are not modified.
+     * 
+     * @param offset Absolute index of the string's length prefix.
+     * @return Absolute index of the first byte following the string, or
+     *  {@link #INCOMPLETE} if the buffer ends before that.
+     */
+    protected static int skipUTF(ByteBuf buffer, int offset)
+    {
+        if (buffer.writerIndex() - offset < 2)
+            return INCOMPLETE;
+        int end = offset + 2 + buffer.getUnsignedShort(offset);
+        return end <= buffer.writerIndex() ? end : INCOMPLETE;
+    }
+
     /**
      * Attempts parsing a message.
      * @return true if the message was successfully parsed, or false if the message
@@ -76,20 +91,15 @@ public abstract class InboundMessage
      */
     protected int readByte() throws BufferUnderrunException
     {
-        try
-        {
-            return buffer.readByte() & 0xff; // remove sign
-        }
-        catch (IndexOutOfBoundsException e)
-        {
-            throw new BufferUnderrunException();
-        }
+        if (!buffer.isReadable())
+            throw BufferUnderrunException.INSTANCE;
+        return buffer.readUnsignedByte();
     }
     
     protected byte[] readBytes(int length) throws BufferUnderrunException
     {
         if (buffer.readableBytes() < length)
-            throw new BufferUnderrunException();
+            throw BufferUnderrunException.INSTANCE;
         byte[] result = new byte[length];
         buffer.readBytes(result);
         return result;
@@ -101,14 +111,9 @@ public abstract class InboundMessage
      */
     protected int readInt() throws BufferUnderrunException
     {
-        try
-        {
-            return buffer.readInt();
-        }
-        catch (IndexOutOfBoundsException e)
-        {
-            throw new BufferUnderrunException();
-        }
+        if (buffer.readableBytes() < 4)
+            throw BufferUnderrunException.INSTANCE;
+        return buffer.readInt();
     }
     
     /**
@@ -125,46 +130,58 @@ public abstract class InboundMessage
     protected String readUTF()
         throws BufferUnderrunException
     {
-        try
-        {
-            int length = buffer.readShort() & 0xffff;
-            ByteBuffer bb = ByteBuffer.allocate(length);
-            buffer.readBytes(bb);
-            bb.flip();
-            
-            CharBuffer cb;
-            try
-            {
-                CharsetDecoder decoder = UTF_8.newDecoder();
-                decoder.onMalformedInput(CodingErrorAction.REPORT);
-                cb = decoder.decode(bb);
-            }
-            catch (CharacterCodingException e)
-            {
-                // We wanted this exception by setting CodingErrorAction.REPORT,
-                // now we can log a warning and decode the invalid
-                // data while replacing invalid sequences with spaces.
-                log.warn("{}", e.toString());
-                CharsetDecoder decoder = UTF_8.newDecoder();
-                decoder.onMalformedInput(CodingErrorAction.REPLACE);
-                decoder.replaceWith(" ");
-                try
-                {
-                    cb = decoder.decode(bb);
-                }
-                catch (CharacterCodingException cce)
-                {
-                    // should never happen (CodingErrorAction.REPLACE)
-                    log.error(cce.toString(), cce);
-                    cb = CharBuffer.allocate(0);
-                }
-            }
-            
-            return cb.toString();
-        }
-        catch (IndexOutOfBoundsException e)
-        {
-            throw new BufferUnderrunException();
-        }
+        int offset = skipUTF(buffer, buffer.readerIndex());
+        if (offset == INCOMPLETE)
+            throw BufferUnderrunException.INSTANCE;
+        int index = buffer.readerIndex() + 2;
+        String result = UTF8Decoder.decode(buffer, index, offset - index);
+        buffer.readerIndex(offset);
+        return result;
+    }
+    
+    /**
+     * Reads a string like {@link #readUTF()}, returning the cached instance
+     * if the cache has one with the same bytes.
+     * 
+     * @throws BufferUnderrunException
+     */
+    protected String readUTF(StringCache cache)
+        throws BufferUnderrunException
+    {
+        int offset = skipUTF(buffer, buffer.readerIndex());
+        if (offset == INCOMPLETE)
+            throw BufferUnderrunException.INSTANCE;
+        int index = buffer.readerIndex() + 2;
+        String result = cache.decode(buffer, index, offset - index);
+        buffer.readerIndex(offset);
+        return result;
+    }
+    
+    /**
+     * Skips a string like {@link #readUTF()} without decoding it.
+     * 
+     * @return Absolute index of the string's length prefix in the buffer.
+     * @throws BufferUnderrunException
+     */
+    protected int readUTFOffset()
+        throws BufferUnderrunException
+    {
+        int start = buffer.readerIndex();
+        int offset = skipUTF(buffer, start);
+        if (offset == INCOMPLETE)
+            throw BufferUnderrunException.INSTANCE;
+        buffer.readerIndex(offset);
+        return start;
+    }
+    
+    /**
+     * Retains the buffer being decoded, for messages which keep referring to
+     * parts of it after decoding.
+     * 
+     * @return The buffer, to be released by the caller.
+     */
+    protected ByteBuf retainBuffer()
+    {
+        return buffer.retain();
     }
 }
@@ -1,11 +1,49 @@
 package io.github.lkowalczyk.slf4fx.message;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
+import io.netty.util.ReferenceCounted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LogRecord extends InboundMessage
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A log record sent by a client.
+ * <p>
+ * The message of a decoded record is left in the receive buffer and only
+ * decoded from UTF-8 when {@link #getMessage()} is first called, so records
+ * which end up filtered out never pay for it. Such a record holds on to the
+ * whole receive buffer and must be {@link #release() released} by its last
+ * user; {@link #decodeMessage()} lets go of the buffer early, before a
+ * record is queued for another thread.
+ * <p>
+ * Records obtained with {@link #newInstance(StringCache)} are pooled: once
+ * released, a record goes back to the pool and must not be used anymore.
+ * Records created with a constructor keep a message already decoded.
+ * <p>
+ * Each decoded record is stamped with its receive time and its position
+ * among the records of its connection, so that records handed over to
+ * other threads or several sinks can be put back in order.
+ * 
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public class LogRecord extends InboundMessage implements ReferenceCounted
 {
     private static final Logger log = LoggerFactory.getLogger(LogRecord.class);
+    private static final AtomicIntegerFieldUpdater<LogRecord> REFCNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(LogRecord.class, "refCnt");
+    private static final Recycler<LogRecord> RECYCLER = new Recycler<LogRecord>()
+    {
+        @Override
+        protected LogRecord newObject(Recycler.Handle handle)
+        {
+            return new LogRecord(handle);
+        }
+    };
     
     public enum Level
     {
@@ -15,6 +53,55 @@ public class LogRecord extends InboundMessage
     private String category;
     private Level level;
     private String message;
+    /** Retained buffer holding the undecoded message, or null. */
+    private ByteBuf messageBuffer;
+    private int messageOffset;
+    private StringCache categories;
+    private final Recycler.Handle handle;
+    private long receivedNanos;
+    private long sequence;
+    @SuppressWarnings("unused")
+    private volatile int refCnt = 1;
+    
+    /**
+     * Creates an empty record to be filled by {@link #tryDecode(ByteBuf)}.
+     */
+    public LogRecord()
+    {
+        this((Recycler.Handle) null);
+    }
+    
+    private LogRecord(Recycler.Handle handle)
+    {
+        this.handle = handle;
+    }
+    
+    /**
+     * Creates a record generated on the server side.
+     */
+    public LogRecord(String category, Level level, String message)
+    {
+        this.handle = null;
+        this.category = category;
+        this.level = level;
+        this.message = message;
+        this.receivedNanos = System.nanoTime();
+    }
+    
+    /**
+     * Takes an empty record from the pool, to be filled by
+     * {@link #tryDecode(ByteBuf)}.
+     * 
+     * @param categories Cache of the categories of the connection, or null.
+     */
+    public static LogRecord newInstance(StringCache categories)
+    {
+        LogRecord record = RECYCLER.get();
+        // published to other threads through the queues it is handed over by
+        REFCNT_UPDATER.lazySet(record, 1);
+        record.categories = categories;
+        return record;
+    }
     
     @Override
     protected MessageType getType()
@@ -22,40 +109,51 @@ public class LogRecord extends InboundMessage
         return MessageType.LOG_RECORD;
     }
     
+    /**
+     * Computes the length of the log record starting at the buffer's reader
+     * index by peeking at its length prefixes.
+     * 
+     * @return The length of the whole message in bytes, or {@link #INCOMPLETE}
+     *  if it has not been fully received yet.
+     */
+    public static int frameLength(ByteBuf buffer)
+    {
+        int start = buffer.readerIndex();
+        int offset = skipUTF(buffer, start + 1); // category
+        if (offset == INCOMPLETE)
+            return INCOMPLETE;
+        offset = skipUTF(buffer, offset + 4); // level, message
+        return offset == INCOMPLETE ? INCOMPLETE : offset - start;
+    }
+    
     @Override
     protected void doDecode()
         throws BufferUnderrunException
     {
         readByte();
-        category = readUTF();
+        category = categories != null ? readUTF(categories) : readUTF();
         level = readLevel();
-        message = readUTF();
+        messageOffset = readUTFOffset();
+        messageBuffer = retainBuffer();
     }
     
     private Level readLevel()
         throws BufferUnderrunException
     {
-        try
-        {
-            int levelValue = readInt();
-            switch (levelValue)
-            {
-                case 0:
-                    return Level.ERROR;
-                case 1:
-                    return Level.WARN;
-                case 2:
-                    return Level.INFO;
-                case 3:
-                    return Level.DEBUG;
-                default:
-                    log.warn("Unknown logging level: {}, using INFO", levelValue);
-                    return Level.INFO;
-            }
-        }
-        catch (IndexOutOfBoundsException e)
+        int levelValue = readInt();
+        switch (levelValue)
         {
-            throw new BufferUnderrunException();
+            case 0:
+                return Level.ERROR;
+            case 1:
+                return Level.WARN;
+            case 2:
+                return Level.INFO;
+            case 3:
+                return Level.DEBUG;
+            default:
+                log.warn("Unknown logging level: {}, using INFO", levelValue);
+                return Level.INFO;
         }
     }
     
@@ -69,11 +167,216 @@ public class LogRecord extends InboundMessage
         return level;
     }
     
+    /**
+     * Stamps the record with the time and position it was received in.
+     */
+    public void setReceived(long receivedNanos, long sequence)
+    {
+        this.receivedNanos = receivedNanos;
+        this.sequence = sequence;
+    }
+    
+    /**
+     * @return {@link System#nanoTime()} of the read the record was decoded
+     *  from, or of its creation for records generated on the server side.
+     */
+    public long getReceivedNanos()
+    {
+        return receivedNanos;
+    }
+    
+    /**
+     * @return Position of the record among the records received on its
+     *  connection, starting from 1, or 0 for records generated on the server
+     *  side. Records dropped after decoding leave gaps.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+    
+    /**
+     * Returns the message, decoding it on the first call. Not thread-safe.
+     * 
+     * @throws IllegalReferenceCountException if the record has been released
+     *  before the message was decoded.
+     */
     public String getMessage()
     {
+        if (message == null && messageBuffer != null)
+        {
+            if (refCnt == 0)
+                throw new IllegalReferenceCountException(0);
+            message = UTF8Decoder.decode(messageBuffer, messageOffset + 2,
+                    messageBuffer.getUnsignedShort(messageOffset));
+        }
         return message;
     }
     
+    /**
+     * Decodes the message if it has not been decoded yet and releases the
+     * receive buffer it was decoded from. Not thread-safe.
+     */
+    public void decodeMessage()
+    {
+        getMessage();
+        if (messageBuffer != null)
+        {
+            messageBuffer.release();
+            messageBuffer = null;
+        }
+    }
+    
+    /**
+     * Hashes the UTF-8 bytes of the message without decoding it. Not
+     * thread-safe.
+     */
+    public int getMessageHash()
+    {
+        ByteBuf buffer = messageBytes();
+        if (buffer == null)
+            return 0;
+        int index = buffer.readerIndex();
+        int end = buffer.writerIndex();
+        int hash = end - index;
+        for (; index + 8 <= end; index += 8)
+        {
+            long value = buffer.getLong(index);
+            hash = 31 * hash + (int) (value ^ (value >>> 32));
+        }
+        for (; index < end; index++)
+        {
+            hash = 31 * hash + buffer.getByte(index);
+        }
+        return hash;
+    }
+    
+    /**
+     * @return A copy of the UTF-8 bytes of the message, or null if there is
+     *  no message. Not thread-safe.
+     */
+    public byte[] getMessageBytes()
+    {
+        ByteBuf buffer = messageBytes();
+        if (buffer == null)
+            return null;
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return bytes;
+    }
+    
+    /**
+     * Compares the message with UTF-8 bytes without decoding it. Not
+     * thread-safe.
+     *
+     * @param bytes Bytes from {@link #getMessageBytes()} of another record.
+     */
+    public boolean messageEquals(byte[] bytes)
+    {
+        ByteBuf buffer = messageBytes();
+        if (buffer == null || bytes == null)
+            return buffer == null && bytes == null;
+        int index = buffer.readerIndex();
+        if (buffer.readableBytes() != bytes.length)
+            return false;
+        for (int i = 0; i < bytes.length; i++)
+        {
+            if (buffer.getByte(index + i) != bytes[i])
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * @return The UTF-8 bytes of the message between the reader and writer
+     *  index of a derived buffer, encoded from the decoded message if the
+     *  record does not hold them, or null if there is no message.
+     */
+    private ByteBuf messageBytes()
+    {
+        if (messageBuffer != null)
+        {
+            if (refCnt == 0)
+                throw new IllegalReferenceCountException(0);
+            return messageBuffer.duplicate().setIndex(messageOffset + 2,
+                    messageOffset + 2 + messageBuffer.getUnsignedShort(messageOffset));
+        }
+        return message != null ? Unpooled.wrappedBuffer(message.getBytes(CharsetUtil.UTF_8)) : null;
+    }
+    
+    @Override
+    public int refCnt()
+    {
+        return refCnt;
+    }
+    
+    @Override
+    public LogRecord retain()
+    {
+        return retain(1);
+    }
+    
+    @Override
+    public LogRecord retain(int increment)
+    {
+        if (increment <= 0)
+            throw new IllegalArgumentException("increment: " + increment + " (expected: > 0)");
+        while (true)
+        {
+            int current = refCnt;
+            if (current == 0)
+                throw new IllegalReferenceCountException(0, increment);
+            if (current > Integer.MAX_VALUE - increment)
+                throw new IllegalReferenceCountException(current, increment);
+            if (REFCNT_UPDATER.compareAndSet(this, current, current + increment))
+                return this;
+        }
+    }
+    
+    @Override
+    public boolean release()
+    {
+        return release(1);
+    }
+    
+    @Override
+    public boolean release(int decrement)
+    {
+        if (decrement <= 0)
+            throw new IllegalArgumentException("decrement: " + decrement + " (expected: > 0)");
+        while (true)
+        {
+            int current = refCnt;
+            if (current < decrement)
+                throw new IllegalReferenceCountException(current, -decrement);
+            if (REFCNT_UPDATER.compareAndSet(this, current, current - decrement))
+            {
+                if (current != decrement)
+                    return false;
+                if (messageBuffer != null)
+                {
+                    messageBuffer.release();
+                    messageBuffer = null;
+                }
+                recycle();
+                return true;
+            }
+        }
+    }
+    
+    private void recycle()
+    {
+        if (handle == null)
+            return;
+        category = null;
+        level = null;
+        message = null;
+        categories = null;
+        receivedNanos = 0;
+        sequence = 0;
+        RECYCLER.recycle(this, handle);
+    }
+    
     @Override
     public int hashCode()
     {
@@ -81,6 +384,7 @@ public class LogRecord extends InboundMessage
         int result = super.hashCode();
         result = prime * result + ((category == null) ? 0 : category.hashCode());
         result = prime * result + ((level == null) ? 0 : level.hashCode());
+        String message = getMessage();
         result = prime * result + ((message == null) ? 0 : message.hashCode());
         return result;
     }
@@ -104,12 +408,13 @@ public class LogRecord extends InboundMessage
             return false;
         if (level != other.level)
             return false;
+        String message = getMessage();
         if (message == null)
         {
-            if (other.message != null)
+            if (other.getMessage() != null)
                 return false;
         }
-        else if (!message.equals(other.message))
+        else if (!message.equals(other.getMessage()))
             return false;
         return true;
     }
@@ -117,6 +422,7 @@ public class LogRecord extends InboundMessage
     @Override
     public String toString()
     {
-        return "LogRecord [category=" + category + ", level=" + level + ", message=" + message + "]";
+        return "LogRecord [category=" + category + ", level=" + level + ", message="
+                + (message != null || refCnt == 0 ? message : getMessage()) + "]";
     }
 }
@@ -8,6 +8,13 @@ public enum MessageType
     LOG_RECORD(3),
     POLICY_FILE_REQUEST('<');
     
+    private static final MessageType[] BY_TAG = new MessageType[256];
+    static
+    {
+        for (MessageType type : values())
+            BY_TAG[type.tag] = type;
+    }
+
     private final int tag;
 
     private MessageType(int tag)
@@ -19,4 +26,17 @@ public enum MessageType
     {
         return tag;
     }
+
+    /**
+     * Returns the message type identified by the given tag byte.
+     * 
+     * @param tag Unsigned value of the first byte of a message.
+     * @return The matching message type or null if the tag is unknown.
+     */
+    public static MessageType forTag(int tag)
+    {
+        if (tag < 0 || tag >= BY_TAG.length)
+            return null;
+        return BY_TAG[tag];
+    }
 }
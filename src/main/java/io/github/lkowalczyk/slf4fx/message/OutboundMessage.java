@@ -1,5 +1,8 @@
 package io.github.lkowalczyk.slf4fx.message;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 import java.io.ByteArrayOutputStream;
 
 /**
@@ -17,6 +20,15 @@ public abstract class OutboundMessage {
         return os.toByteArray();
     }
 
+    /**
+     * Encodes this message into a read-only buffer which is never released.
+     * The same message can then be written to any number of channels, any
+     * number of times, by writing the buffer's {@link ByteBuf#duplicate() duplicates}.
+     */
+    public ByteBuf toSharedBuffer() {
+        return Unpooled.unreleasableBuffer(Unpooled.unmodifiableBuffer(Unpooled.wrappedBuffer(getBytes())));
+    }
+
     /**
      * When called, this method should in turn output encoded data
      * using the {@code write*} methods in this class.
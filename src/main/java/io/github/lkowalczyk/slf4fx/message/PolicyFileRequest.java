@@ -1,5 +1,7 @@
 package io.github.lkowalczyk.slf4fx.message;
 
+import io.netty.buffer.ByteBuf;
+
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
 
@@ -24,6 +26,17 @@ public class PolicyFileRequest extends InboundMessage
         return MessageType.POLICY_FILE_REQUEST;
     }
 
+    /**
+     * The policy file request has a fixed length.
+     * 
+     * @return The length of the whole message in bytes, or {@link #INCOMPLETE}
+     *  if it has not been fully received yet.
+     */
+    public static int frameLength(ByteBuf buffer)
+    {
+        return buffer.readableBytes() < REQUEST.length ? INCOMPLETE : REQUEST.length;
+    }
+
     @Override
     protected void doDecode()
         throws BufferUnderrunException, MalformedMessageException
@@ -0,0 +1,79 @@
+package io.github.lkowalczyk.slf4fx.message;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+/**
+ * Small direct-mapped cache of strings decoded from UTF-8, for strings that
+ * keep repeating on a connection, such as log record categories. Looking up
+ * a cached string compares its bytes without going through the buffer byte
+ * by byte, in place for heap buffers and in a scratch array otherwise, and
+ * allocates nothing. NOT thread-safe, an instance is meant to be used by a
+ * single channel.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public final class StringCache
+{
+    private static final int SLOTS = 64;
+    /** Longer strings are decoded without being cached. */
+    private static final int MAX_LENGTH = 256;
+    /** Number of trailing bytes selecting the slot. */
+    private static final int HASHED_BYTES = 8;
+
+    private final byte[][] keys = new byte[SLOTS][];
+    private final String[] values = new String[SLOTS];
+    private final byte[] scratch = new byte[MAX_LENGTH];
+
+    /**
+     * Decodes a string, or returns the cached one if it has the same bytes.
+     *
+     * @param index Absolute index of the UTF-8 payload.
+     * @param length Length of the payload in bytes.
+     */
+    public String decode(ByteBuf buffer, int index, int length)
+    {
+        if (length > MAX_LENGTH)
+            return UTF8Decoder.decode(buffer, index, length);
+        byte[] array;
+        int offset;
+        if (buffer.hasArray())
+        {
+            array = buffer.array();
+            offset = buffer.arrayOffset() + index;
+        }
+        else
+        {
+            array = scratch;
+            offset = 0;
+            buffer.getBytes(index, scratch, 0, length);
+        }
+        // the slot only needs to tell apart the strings in use at the same
+        // time, which mostly differ at their ends, and a hit is verified anyway
+        int hash = length;
+        for (int i = Math.max(0, length - HASHED_BYTES); i < length; i++)
+            hash = 31 * hash + array[offset + i];
+        int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+        byte[] key = keys[slot];
+        if (key != null && equals(key, array, offset, length))
+            return values[slot];
+
+        String value = UTF8Decoder.decode(buffer, index, length);
+        keys[slot] = Arrays.copyOfRange(array, offset, offset + length);
+        values[slot] = value;
+        return value;
+    }
+
+    private static boolean equals(byte[] key, byte[] array, int offset, int length)
+    {
+        if (key.length != length)
+            return false;
+        for (int i = 0; i < length; i++)
+        {
+            if (key[i] != array[offset + i])
+                return false;
+        }
+        return true;
+    }
+}
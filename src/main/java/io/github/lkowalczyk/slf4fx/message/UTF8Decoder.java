@@ -0,0 +1,127 @@
+package io.github.lkowalczyk.slf4fx.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes UTF-8 strings in place, without copying them out of the {@link ByteBuf}
+ * first. Pure ASCII strings, which make up most of the traffic, bypass the
+ * {@link CharsetDecoder} entirely. Decoders and the output buffer are kept
+ * per thread.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class UTF8Decoder
+{
+    private static final Logger log = LoggerFactory.getLogger(InboundMessage.class);
+
+    private static final ByteBufProcessor FIND_NON_ASCII = new ByteBufProcessor()
+    {
+        @Override
+        public boolean process(byte value)
+        {
+            return value >= 0;
+        }
+    };
+
+    private static final FastThreadLocal<CharsetDecoder> STRICT_DECODER = new FastThreadLocal<CharsetDecoder>()
+    {
+        @Override
+        protected CharsetDecoder initialValue()
+        {
+            return CharsetUtil.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+    };
+
+    private static final FastThreadLocal<CharsetDecoder> REPLACING_DECODER = new FastThreadLocal<CharsetDecoder>()
+    {
+        @Override
+        protected CharsetDecoder initialValue()
+        {
+            return CharsetUtil.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .replaceWith(" ");
+        }
+    };
+
+    private static final FastThreadLocal<CharBuffer> CHAR_BUFFER = new FastThreadLocal<CharBuffer>()
+    {
+        @Override
+        protected CharBuffer initialValue()
+        {
+            return CharBuffer.allocate(1024);
+        }
+    };
+
+    private UTF8Decoder()
+    {
+    }
+
+    /**
+     * Decodes {@code length} bytes starting at {@code index}. The buffer's
+     * indexes are not modified.
+     * <p>
+     * If an invalid UTF-8 sequence is found, it is replaced with a space
+     * and a warning is logged.
+     */
+    static String decode(ByteBuf buffer, int index, int length)
+    {
+        if (length == 0)
+            return "";
+        if (buffer.forEachByte(index, length, FIND_NON_ASCII) == -1)
+        {
+            if (buffer.hasArray())
+                return new String(buffer.array(), buffer.arrayOffset() + index, length, CharsetUtil.US_ASCII);
+            return buffer.toString(index, length, CharsetUtil.US_ASCII);
+        }
+
+        // a UTF-8 sequence never decodes to more chars than it has bytes
+        CharBuffer chars = CHAR_BUFFER.get();
+        if (chars.capacity() < length)
+        {
+            chars = CharBuffer.allocate(length);
+            CHAR_BUFFER.set(chars);
+        }
+
+        ByteBuffer bytes = buffer.nioBuffer(index, length);
+        CoderResult result = decode(STRICT_DECODER.get(), bytes, chars);
+        if (result.isError())
+        {
+            log.warn("Invalid UTF-8 input ({}), replacing with spaces", result);
+            bytes = buffer.nioBuffer(index, length);
+            result = decode(REPLACING_DECODER.get(), bytes, chars);
+            if (result.isError())
+            {
+                // should never happen (CodingErrorAction.REPLACE)
+                log.error("Cannot decode UTF-8 input ({})", result);
+                return "";
+            }
+        }
+        ((Buffer) chars).flip(); // cast keeps the Java 7 signature when built on newer JDKs
+        return chars.toString();
+    }
+
+    private static CoderResult decode(CharsetDecoder decoder, ByteBuffer in, CharBuffer out)
+    {
+        decoder.reset();
+        ((Buffer) out).clear();
+        CoderResult result = decoder.decode(in, out, true);
+        if (result.isUnderflow())
+            result = decoder.flush(out);
+        return result;
+    }
+}
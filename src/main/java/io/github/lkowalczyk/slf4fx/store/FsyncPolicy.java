@@ -0,0 +1,27 @@
+package io.github.lkowalczyk.slf4fx.store;
+
+/**
+ * When {@link SegmentLogSink} forces written records to disk.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public enum FsyncPolicy {
+    /**
+     * Only when a segment is full or the sink is closed. Records survive a
+     * crash of the JVM but not of the operating system.
+     */
+    NEVER,
+
+    /**
+     * After every batch, which is then committed as a group.
+     */
+    EVERY_BATCH,
+
+    /**
+     * After a batch, if the configured interval has passed since the last
+     * forced write. There is no timer: a sink that receives no more
+     * batches forces its records only when a segment is full or it is
+     * closed.
+     */
+    INTERVAL
+}
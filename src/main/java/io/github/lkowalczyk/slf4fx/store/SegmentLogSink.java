@@ -0,0 +1,216 @@
+package io.github.lkowalczyk.slf4fx.store;
+
+import io.github.lkowalczyk.slf4fx.LogEntry;
+import io.github.lkowalczyk.slf4fx.LogSink;
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends received records to fixed-size memory-mapped segment files in a
+ * compact binary format (see {@link SegmentReader} for reading them back).
+ * <p/>
+ * Each batch is written under a single lock and, depending on the
+ * {@link FsyncPolicy}, forced to disk as one group commit. When a record
+ * does not fit in the current segment, the segment is forced and a new one
+ * is started. Existing segments are never appended to; after
+ * {@link #open()} writing continues in a new segment. If a new segment
+ * cannot be started, e.g. because the disk is full, the batch fails and
+ * the next batch tries again.
+ * <p/>
+ * A finished segment is unmapped when its buffer is garbage collected, so
+ * its file may stay mapped for a while after the sink has moved on.
+ * <p/>
+ * Records are stored with the time they were received by the server,
+ * which precedes the time they are written by however long they waited
+ * in a dispatch queue.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public class SegmentLogSink implements LogSink {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(SegmentLogSink.class);
+    private final File directory;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+    private long fsyncIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private boolean opened;
+    private long sequence;
+    private MappedByteBuffer segment;
+    private long lastForce;
+
+    /**
+     * @param directory Directory holding the segment files, created if needed.
+     */
+    public SegmentLogSink(File directory) {
+        if (directory == null)
+            throw new NullPointerException("directory");
+        this.directory = directory;
+    }
+
+    /**
+     * Sets the size of each segment file. Default is 64 MB. Takes effect
+     * on the next segment.
+     *
+     * @param segmentSize size in bytes, at least 1 MB.
+     */
+    public synchronized void setSegmentSize(int segmentSize) {
+        if (segmentSize < MIN_SEGMENT_SIZE)
+            throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE + " (" + segmentSize
+                    + ")");
+        this.segmentSize = segmentSize;
+    }
+
+    public synchronized int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets when written records are forced to disk. Default is
+     * {@link FsyncPolicy#INTERVAL} with an interval of 1 second. The interval
+     * is only checked when a batch is written, so the records of the last
+     * batch before a pause stay unforced until the next batch or close.
+     *
+     * @param fsyncPolicy    not null.
+     * @param intervalMillis interval for {@link FsyncPolicy#INTERVAL}, ignored otherwise.
+     */
+    public synchronized void setFsyncPolicy(FsyncPolicy fsyncPolicy, long intervalMillis) {
+        if (fsyncPolicy == null)
+            throw new NullPointerException("fsyncPolicy");
+        if (intervalMillis < 0)
+            throw new IllegalArgumentException("intervalMillis must not be negative (" + intervalMillis + ")");
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    public synchronized FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        File[] existing = Segments.list(directory);
+        sequence = existing.length > 0 ? Segments.sequence(existing[existing.length - 1]) + 1 : 0;
+        opened = true;
+        startSegment();
+    }
+
+    @Override
+    public synchronized void write(List<LogEntry> entries) throws IOException {
+        if (!opened)
+            throw new IllegalStateException("Sink is not open");
+        if (segment == null)
+            startSegment();
+        long nowMillis = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            LogEntry entry = entries.get(i);
+            long age = TimeUnit.NANOSECONDS.toMillis(nowNanos - entry.getRecord().getReceivedNanos());
+            append(nowMillis - age, entry);
+        }
+        switch (fsyncPolicy) {
+            case EVERY_BATCH:
+                force();
+                break;
+
+            case INTERVAL:
+                if (System.nanoTime() - lastForce >= fsyncIntervalNanos)
+                    force();
+                break;
+
+            case NEVER:
+            default:
+                break;
+        }
+    }
+
+    private void append(long timestamp, LogEntry entry) throws IOException {
+        LogRecord record = entry.getRecord();
+        byte[] applicationId = entry.getApplicationId().getBytes(Segments.UTF_8);
+        byte[] category = record.getCategory().getBytes(Segments.UTF_8);
+        byte[] message = record.getMessage().getBytes(Segments.UTF_8);
+        int length = Segments.RECORD_OVERHEAD + applicationId.length + category.length + message.length;
+
+        // leave room for the terminating zero length
+        if (length + 4 > segment.remaining()) {
+            if (length + 4 > segmentSize - Segments.HEADER_SIZE) {
+                log.warn("Record of {} bytes does not fit in a segment, dropping", length);
+                return;
+            }
+            finishSegment();
+            sequence++;
+            startSegment();
+        }
+
+        segment.putInt(length - 4);
+        segment.putLong(timestamp);
+        segment.put((byte) record.getLevel().ordinal());
+        segment.putShort((short) applicationId.length);
+        segment.put(applicationId);
+        segment.putShort((short) category.length);
+        segment.put(category);
+        segment.putInt(message.length);
+        segment.put(message);
+    }
+
+    private void startSegment() throws IOException {
+        File file = Segments.file(directory, sequence);
+        MappedByteBuffer mapped;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(segmentSize);
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        catch (IOException e) {
+            // don't leave a file without a header behind for the reader to choke on
+            raf.close();
+            if (!file.delete())
+                log.warn("Cannot delete {}", file);
+            throw e;
+        }
+        finally {
+            raf.close();
+        }
+        mapped.putInt(Segments.MAGIC);
+        mapped.putInt(Segments.VERSION);
+        segment = mapped;
+        lastForce = System.nanoTime();
+        log.debug("Started segment {}", file);
+    }
+
+    private void finishSegment() {
+        if (segment.remaining() >= 4)
+            segment.putInt(segment.position(), 0);
+        segment.force();
+        segment = null;
+    }
+
+    private void force() {
+        segment.force();
+        lastForce = System.nanoTime();
+    }
+
+    @Override
+    public synchronized void close() {
+        opened = false;
+        if (segment != null)
+            finishSegment();
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.lkowalczyk.slf4fx.store;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Scans the segment files written by {@link SegmentLogSink}, oldest first.
+ * <pre>
+ * SegmentReader reader = new SegmentReader(directory);
+ * try {
+ *     StoredRecord record;
+ *     while ((record = reader.next()) != null) {
+ *         ...
+ *     }
+ * }
+ * finally {
+ *     reader.close();
+ * }
+ * </pre>
+ * Segments are read as they are when each one is opened. A record cut
+ * short at the end of a segment, e.g. after a crash, ends that segment.
+ * Segments are unmapped when their buffers are garbage collected rather
+ * than on {@link #close()}. An instance is not thread-safe.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public class SegmentReader implements Closeable {
+    private static final LogRecord.Level[] LEVELS = LogRecord.Level.values();
+
+    private final File[] segments;
+    private int nextSegment;
+    private MappedByteBuffer segment;
+
+    /**
+     * @param directory Directory holding the segment files.
+     */
+    public SegmentReader(File directory) {
+        this(directory, 0);
+    }
+
+    /**
+     * @param directory     Directory holding the segment files.
+     * @param firstSequence Sequence number of the first segment to read.
+     */
+    public SegmentReader(File directory, long firstSequence) {
+        File[] all = Segments.list(directory);
+        int first = 0;
+        while (first < all.length && Segments.sequence(all[first]) < firstSequence) {
+            first++;
+        }
+        segments = new File[all.length - first];
+        System.arraycopy(all, first, segments, 0, segments.length);
+    }
+
+    /**
+     * @return The next record or null if there are no more.
+     * @throws IOException if a segment cannot be read or is not a segment file.
+     */
+    public StoredRecord next() throws IOException {
+        while (true) {
+            if (segment == null) {
+                if (nextSegment == segments.length)
+                    return null;
+                openSegment(segments[nextSegment++]);
+            }
+            StoredRecord record = readRecord();
+            if (record != null)
+                return record;
+            closeSegment();
+        }
+    }
+
+    private StoredRecord readRecord() {
+        if (segment.remaining() < 4)
+            return null;
+        int length = segment.getInt();
+        if (length <= 0 || length > segment.remaining() || length < Segments.RECORD_OVERHEAD - 4)
+            return null;
+        int end = segment.position() + length;
+        long timestamp = segment.getLong();
+        int level = segment.get();
+        String applicationId = readString(segment.getShort() & 0xffff, end);
+        if (applicationId == null)
+            return null;
+        String category = readString(segment.getShort() & 0xffff, end);
+        if (category == null)
+            return null;
+        String message = readString(segment.getInt(), end);
+        if (message == null || level < 0 || level >= LEVELS.length)
+            return null;
+        return new StoredRecord(timestamp, applicationId, category, LEVELS[level], message);
+    }
+
+    private String readString(int length, int end) {
+        if (length < 0 || segment.position() + length > end)
+            return null;
+        byte[] bytes = new byte[length];
+        segment.get(bytes);
+        return new String(bytes, Segments.UTF_8);
+    }
+
+    private void openSegment(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally {
+            raf.close();
+        }
+        if (segment.remaining() < Segments.HEADER_SIZE || segment.getInt() != Segments.MAGIC) {
+            closeSegment();
+            throw new IOException(file + " is not a segment file");
+        }
+        int version = segment.getInt();
+        if (version != Segments.VERSION) {
+            closeSegment();
+            throw new IOException(file + " has unsupported version " + version);
+        }
+    }
+
+    private void closeSegment() {
+        segment = null;
+    }
+
+    @Override
+    public void close() {
+        if (segment != null)
+            closeSegment();
+        nextSegment = segments.length;
+    }
+}
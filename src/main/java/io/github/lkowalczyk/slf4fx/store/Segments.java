@@ -0,0 +1,64 @@
+package io.github.lkowalczyk.slf4fx.store;
+
+import io.netty.util.CharsetUtil;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Layout of segment files shared by the writer and the reader.
+ * <p/>
+ * A segment starts with a {@value #HEADER_SIZE}-byte header: the magic
+ * number and the format version. Records follow back to back, each one being:
+ * <pre>
+ * int    length of the rest of the record (0 marks the end of the data)
+ * long   time the record was received, milliseconds since the epoch
+ * byte   level (0 ERROR, 1 WARN, 2 INFO, 3 DEBUG)
+ * short  applicationId length, applicationId in UTF-8
+ * short  category length, category in UTF-8
+ * int    message length, message in UTF-8
+ * </pre>
+ * All numbers are big-endian. Segment files are named after their sequence
+ * number so that they sort in the order they were written.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+final class Segments {
+    static final int MAGIC = 0x53344658; // "S4FX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    /** Length field, timestamp, level and the three string lengths. */
+    static final int RECORD_OVERHEAD = 4 + 8 + 1 + 2 + 2 + 4;
+    static final String SUFFIX = ".seg";
+    static final Charset UTF_8 = CharsetUtil.UTF_8;
+
+    private Segments() {
+    }
+
+    static File file(File directory, long sequence) {
+        return new File(directory, String.format("%020d%s", sequence, SUFFIX));
+    }
+
+    static long sequence(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @return Segment files in the directory in the order they were written.
+     */
+    static File[] list(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX) && name.length() == 20 + SUFFIX.length();
+            }
+        });
+        if (files == null)
+            return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.lkowalczyk.slf4fx.store;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+
+/**
+ * A record read back from a segment file.
+ *
+ * @author Łukasz Kowalczyk &lt;lkowalczyk@gmail.com&gt;
+ */
+public final class StoredRecord {
+    private final long timestamp;
+    private final String applicationId;
+    private final String category;
+    private final LogRecord.Level level;
+    private final String message;
+
+    StoredRecord(long timestamp, String applicationId, String category, LogRecord.Level level, String message) {
+        this.timestamp = timestamp;
+        this.applicationId = applicationId;
+        this.category = category;
+        this.level = level;
+        this.message = message;
+    }
+
+    /**
+     * @return Time the record was received, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getApplicationId() {
+        return applicationId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public LogRecord.Level getLevel() {
+        return level;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredRecord [timestamp=" + timestamp + ", applicationId=" + applicationId + ", category=" + category
+                + ", level=" + level + ", message=" + message + "]";
+    }
+}
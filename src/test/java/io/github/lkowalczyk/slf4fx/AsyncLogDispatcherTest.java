@@ -0,0 +1,135 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLogDispatcherTest {
+    private static final int CAPACITY = 2;
+
+    private final GatedSink sink = new GatedSink();
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    private AsyncLogDispatcher dispatcher;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sink.gate.countDown();
+        if (dispatcher != null)
+            dispatcher.stop();
+        channel.finish();
+    }
+
+    @Test
+    public void dropOldestDiscardsTheHeadOfAFullQueue() throws Exception {
+        fill(OverflowPolicy.DROP_OLDEST);
+        dispatch("4", LogRecord.Level.DEBUG);
+        drain();
+        assertEquals(Arrays.asList("1", "3", "4"), sink.messages);
+        assertEquals(1, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void dropByLevelDiscardsNewDebugAndInfoRecords() throws Exception {
+        fill(OverflowPolicy.DROP_BY_LEVEL);
+        dispatch("4", LogRecord.Level.DEBUG);
+        dispatch("5", LogRecord.Level.INFO);
+        dispatch("6", LogRecord.Level.ERROR);
+        drain();
+        assertEquals(Arrays.asList("1", "3", "6"), sink.messages);
+        assertEquals(3, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void backpressureQueuesTheRecordAndPausesTheChannel() throws Exception {
+        fill(OverflowPolicy.BACKPRESSURE);
+        dispatch("4", LogRecord.Level.DEBUG);
+        assertFalse(channel.config().isAutoRead());
+        drain();
+        assertEquals(Arrays.asList("1", "2", "3", "4"), sink.messages);
+        assertEquals(0, dispatcher.getDroppedCount());
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void blockWaitsForRoomInTheQueue() throws Exception {
+        fill(OverflowPolicy.BLOCK);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch("4", LogRecord.Level.DEBUG);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        sink.gate.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        drain();
+        assertEquals(Arrays.asList("1", "2", "3", "4"), sink.messages);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    /**
+     * Starts a dispatcher with a single consumer thread, stuck writing record
+     * "1", and a full queue holding records "2" and "3".
+     */
+    private void fill(OverflowPolicy policy) throws InterruptedException {
+        dispatcher = new AsyncLogDispatcher(sink, new ServerMetrics(), 1, CAPACITY, policy);
+        dispatcher.start();
+        dispatch("1", LogRecord.Level.DEBUG);
+        assertTrue(sink.entered.await(5, TimeUnit.SECONDS));
+        dispatch("2", LogRecord.Level.DEBUG);
+        dispatch("3", LogRecord.Level.DEBUG);
+        assertEquals(CAPACITY, dispatcher.getQueueSize());
+    }
+
+    private void dispatch(String message, LogRecord.Level level) {
+        dispatcher.dispatch(channel, new LogEntry("app", null, new LogRecord("category", level, message)));
+    }
+
+    private void drain() throws InterruptedException {
+        sink.gate.countDown();
+        dispatcher.stop();
+    }
+
+    /**
+     * Records the messages written, holding up the first batch until the
+     * gate is opened.
+     */
+    private static final class GatedSink implements LogSink {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void write(List<LogEntry> entries) throws InterruptedException {
+            for (LogEntry entry : entries) {
+                messages.add(entry.getRecord().getMessage());
+            }
+            entered.countDown();
+            gate.await();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.lkowalczyk.slf4fx;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CredentialIndexTest {
+    // SHA-256 of "secret"
+    private static final String SECRET_DIGEST = "2bb80d537b1da3e38bd30361aa855686bde0eacd7162fef6a25fe97bf527a25b";
+
+    @Test
+    public void grantsAccessToEveryoneWithoutCredentials() {
+        assertTrue(CredentialIndex.OPEN.isOpen());
+        assertTrue(CredentialIndex.OPEN.verify("app", "anything"));
+    }
+
+    @Test
+    public void verifiesPlainAndDigestSecrets() {
+        Map<String, String> credentials = new HashMap<>();
+        credentials.put("plain", "secret");
+        credentials.put("hashed", CredentialIndex.SHA256_PREFIX + SECRET_DIGEST);
+        CredentialIndex index = new CredentialIndex(credentials);
+
+        assertTrue(index.verify("plain", "secret"));
+        assertTrue(index.verify("hashed", "secret"));
+        assertFalse(index.verify("plain", "wrong"));
+        assertFalse(index.verify("unknown", "secret"));
+        assertFalse(index.verify(null, "secret"));
+        assertFalse(index.verify("plain", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedDigests() {
+        new CredentialIndex(Collections.singletonMap("app", CredentialIndex.SHA256_PREFIX + "xyz"));
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.github.lkowalczyk.slf4fx.InboundMessageDecoderTest.writeLogRecord;
+import static org.junit.Assert.assertEquals;
+
+public class DuplicateSuppressionHandlerTest {
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    @Test
+    public void passesOnTheFirstRecordAndSummarizesRepeatsOnClose() {
+        EmbeddedChannel channel = newChannel(60000);
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "c", 0, "zażółć");
+        writeLogRecord(in, "c", 0, "zażółć");
+        writeLogRecord(in, "c", 1, "zażółć");
+        writeLogRecord(in, "c", 0, "zażółć");
+        channel.writeInbound(in);
+        assertEquals(Arrays.asList("ERROR zażółć", "WARN zażółć"), readMessages(channel));
+
+        channel.finish();
+        assertEquals(Arrays.asList("ERROR zażółć (repeated 2 times)"), readMessages(channel));
+        assertEquals(2, metrics.snapshot(0, 0, 0).getSuppressedDuplicateCount());
+    }
+
+    @Test
+    public void summarizesRepeatsAtTheEndOfAReadAfterTheWindow() throws InterruptedException {
+        EmbeddedChannel channel = newChannel(1);
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "c", 2, "m");
+        writeLogRecord(in, "c", 2, "m");
+        channel.writeInbound(in);
+        assertEquals(Arrays.asList("INFO m"), readMessages(channel));
+
+        Thread.sleep(10);
+        in = Unpooled.buffer();
+        writeLogRecord(in, "c", 2, "other");
+        channel.writeInbound(in);
+        assertEquals(Arrays.asList("INFO other", "INFO m (repeated 1 time)"), readMessages(channel));
+
+        channel.finish();
+        assertEquals(0, readMessages(channel).size());
+    }
+
+    private EmbeddedChannel newChannel(int window) {
+        return new EmbeddedChannel(
+                new InboundMessageDecoder(metrics, FrameLimits.DEFAULT, new AtomicReference<>(ServerConfig.INITIAL)),
+                new DuplicateSuppressionHandler(metrics, window));
+    }
+
+    private static List<String> readMessages(EmbeddedChannel channel) {
+        List<String> messages = new ArrayList<>();
+        Object message;
+        while ((message = channel.readInbound()) != null) {
+            LogRecord record = (LogRecord) message;
+            messages.add(record.getLevel() + " " + record.getMessage());
+            record.release();
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,292 @@
+package io.github.lkowalczyk.slf4fx;
+
+import io.github.lkowalczyk.slf4fx.message.AccessRequest;
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import io.github.lkowalczyk.slf4fx.message.MessageType;
+import io.github.lkowalczyk.slf4fx.message.PolicyFileRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InboundMessageDecoderTest {
+    private ServerMetrics metrics;
+    private AtomicReference<ServerConfig> config;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        metrics = new ServerMetrics();
+        config = new AtomicReference<>(ServerConfig.INITIAL);
+        channel = new EmbeddedChannel(new InboundMessageDecoder(metrics, FrameLimits.DEFAULT, config));
+    }
+
+    @After
+    public void tearDown() {
+        Object message;
+        while ((message = channel.readInbound()) != null) {
+            release(message);
+        }
+        channel.finish();
+    }
+
+    @Test
+    public void decodesEveryMessageType() {
+        ByteBuf in = Unpooled.buffer();
+        writePolicyFileRequest(in);
+        writeAccessRequest(in, "app", "secret");
+        writeLogRecord(in, "cat", 1, "message");
+        channel.writeInbound(in);
+
+        assertTrue(channel.readInbound() instanceof PolicyFileRequest);
+        AccessRequest request = (AccessRequest) channel.readInbound();
+        assertEquals("app", request.getApplicationId());
+        assertEquals("secret", request.getSecret());
+        LogRecord record = (LogRecord) channel.readInbound();
+        try {
+            assertEquals("cat", record.getCategory());
+            assertEquals(LogRecord.Level.WARN, record.getLevel());
+            assertEquals("message", record.getMessage());
+            assertEquals(1, record.getSequence());
+        }
+        finally {
+            record.release();
+        }
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void decodesFramesSplitAtEveryByte() {
+        ByteBuf in = Unpooled.buffer();
+        for (int i = 0; i < 3; i++) {
+            writeLogRecord(in, "category", 2, "message " + i);
+        }
+        for (int split = 1; split < in.readableBytes(); split++) {
+            setUp();
+            ByteBuf frames = in.duplicate();
+            while (frames.isReadable()) {
+                channel.writeInbound(frames.readSlice(Math.min(split, frames.readableBytes())).retain());
+            }
+            assertEquals("split " + split, messages("message 0", "message 1", "message 2"), readMessages());
+            tearDown();
+        }
+        in.release();
+    }
+
+    @Test
+    public void countsDecodedFramesOncePerRead() {
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "c", 0, "m");
+        int length = in.readableBytes();
+        writeLogRecord(in, "c", 0, "m");
+        writeAccessRequest(in, "a", "s");
+        channel.writeInbound(in);
+        readMessages();
+
+        ServerStats stats = metrics.snapshot(0, 0, 0);
+        assertEquals(Long.valueOf(2), stats.getFramesByType().get(MessageType.LOG_RECORD.name()));
+        assertEquals(Long.valueOf(2 * length), stats.getBytesByType().get(MessageType.LOG_RECORD.name()));
+        assertEquals(Long.valueOf(1), stats.getFramesByType().get(MessageType.ACCESS_REQUEST.name()));
+    }
+
+    @Test
+    public void releasesTheReceiveBufferOnceTheMessageIsDecoded() {
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "c", 0, "message");
+        channel.writeInbound(in);
+        LogRecord record = (LogRecord) channel.readInbound();
+        assertEquals(1, in.refCnt());
+
+        record.decodeMessage();
+        assertEquals(0, in.refCnt());
+        assertEquals("message", record.getMessage());
+        record.release();
+    }
+
+    @Test
+    public void disconnectsOnUnknownTag() {
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 42, 0, 0 }));
+        assertNull(channel.readInbound());
+        assertFalse(channel.isActive());
+        assertEquals(1, metrics.snapshot(0, 0, 0).getMalformedMessageCount());
+    }
+
+    @Test
+    public void skipsOversizedRecordsAndResumesAfterThem() {
+        useLimits(new FrameLimits(FrameLimits.MAX_STRING_LENGTH, 10, FrameLimits.MAX_STRING_LENGTH,
+                FrameLimits.MAX_FRAME_LENGTH));
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "c", 0, "before");
+        writeLogRecord(in, "c", 0, repeat('x', 100));
+        writeLogRecord(in, "c", 0, "after");
+        // one byte per read, so that the skipped frame spans many of them
+        while (in.isReadable()) {
+            channel.writeInbound(in.readSlice(1).retain());
+        }
+        in.release();
+
+        assertEquals(messages("before", "after"), readMessages());
+        assertEquals(1, metrics.snapshot(0, 0, 0).getOversizedFrameCount());
+        assertTrue(channel.isActive());
+    }
+
+    @Test
+    public void skipsIncompleteFramesPastMaxPendingBytes() {
+        useLimits(new FrameLimits(FrameLimits.MAX_STRING_LENGTH, FrameLimits.MAX_STRING_LENGTH,
+                FrameLimits.MAX_STRING_LENGTH, 64));
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "c", 0, repeat('x', 200));
+        writeLogRecord(in, "c", 0, "after");
+        channel.writeInbound(in.readSlice(100).retain());
+        channel.writeInbound(in);
+
+        assertEquals(messages("after"), readMessages());
+        assertEquals(1, metrics.snapshot(0, 0, 0).getOversizedFrameCount());
+    }
+
+    @Test
+    public void filtersRecordsBelowTheLevelsOfTheGrantedApplication() {
+        Map<String, LogRecord.Level> levels = new HashMap<>();
+        levels.put("", LogRecord.Level.INFO);
+        levels.put("app.noisy", LogRecord.Level.ERROR);
+        levels.put("app.noisy.keep", LogRecord.Level.DEBUG);
+        config.set(ServerConfig.INITIAL.withLevels(levels));
+
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "before", 3, "filtered");
+        writeLogRecord(in, "before", 2, "passed");
+        writeAccessRequest(in, "app", "secret");
+        writeLogRecord(in, "noisy", 1, "filtered");
+        writeLogRecord(in, "noisy", 0, "passed");
+        writeLogRecord(in, "noisy.keep.x", 3, "passed");
+        writeLogRecord(in, "other", 3, "filtered");
+        for (int split : new int[] { in.readableBytes(), 1 }) {
+            channel.finish();
+            channel = new EmbeddedChannel(new InboundMessageDecoder(metrics, FrameLimits.DEFAULT, config),
+                    new GrantingHandler());
+            ByteBuf frames = in.duplicate();
+            while (frames.isReadable()) {
+                channel.writeInbound(frames.readSlice(Math.min(split, frames.readableBytes())).retain());
+            }
+            assertEquals("split " + split, messages("before passed", "noisy passed", "noisy.keep.x passed"),
+                    readCategoriesAndMessages());
+        }
+        in.release();
+        assertEquals(6, metrics.snapshot(0, 0, 0).getFilteredRecordCount());
+    }
+
+    @Test
+    public void appliesChangedLevelsFromTheNextRead() {
+        ByteBuf in = Unpooled.buffer();
+        writeLogRecord(in, "c", 3, "first");
+        channel.writeInbound(in);
+        config.set(ServerConfig.INITIAL.withLevels(Collections.singletonMap("", LogRecord.Level.INFO)));
+        in = Unpooled.buffer();
+        writeLogRecord(in, "c", 3, "second");
+        writeLogRecord(in, "c", 2, "third");
+        channel.writeInbound(in);
+
+        assertEquals(messages("first", "third"), readMessages());
+        assertEquals(1, metrics.snapshot(0, 0, 0).getFilteredRecordCount());
+    }
+
+    private void useLimits(FrameLimits limits) {
+        channel.finish();
+        channel = new EmbeddedChannel(new InboundMessageDecoder(metrics, limits, config));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private List<String> readMessages() {
+        List<String> messages = new ArrayList<>();
+        Object message;
+        while ((message = channel.readInbound()) != null) {
+            if (message instanceof LogRecord)
+                messages.add(((LogRecord) message).getMessage());
+            release(message);
+        }
+        return messages;
+    }
+
+    private List<String> readCategoriesAndMessages() {
+        List<String> messages = new ArrayList<>();
+        Object message;
+        while ((message = channel.readInbound()) != null) {
+            if (message instanceof LogRecord)
+                messages.add(((LogRecord) message).getCategory() + " " + ((LogRecord) message).getMessage());
+            release(message);
+        }
+        return messages;
+    }
+
+    private static List<String> messages(String... messages) {
+        List<String> list = new ArrayList<>();
+        for (String message : messages) {
+            list.add(message);
+        }
+        return list;
+    }
+
+    private static void release(Object message) {
+        if (message instanceof LogRecord)
+            ((LogRecord) message).release();
+    }
+
+    /**
+     * Grants access to every application, like {@link MessageHandler} does
+     * for valid credentials.
+     */
+    private static final class GrantingHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof AccessRequest)
+                ctx.channel().attr(MessageHandler.APPLICATION_ID).set(((AccessRequest) msg).getApplicationId());
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    static void writeLogRecord(ByteBuf out, String category, int level, String message) {
+        out.writeByte(MessageType.LOG_RECORD.getTag());
+        writeUTF(out, category);
+        out.writeInt(level);
+        writeUTF(out, message);
+    }
+
+    static void writeAccessRequest(ByteBuf out, String applicationId, String secret) {
+        out.writeByte(MessageType.ACCESS_REQUEST.getTag());
+        writeUTF(out, applicationId);
+        writeUTF(out, secret);
+    }
+
+    static void writePolicyFileRequest(ByteBuf out) {
+        out.writeBytes("<policy-file-request/>\0".getBytes(CharsetUtil.US_ASCII));
+    }
+
+    static void writeUTF(ByteBuf out, String value) {
+        byte[] bytes = value.getBytes(CharsetUtil.UTF_8);
+        out.writeShort(bytes.length);
+        out.writeBytes(bytes);
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.lkowalczyk.slf4fx;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LoggerCacheTest {
+    @Test
+    public void countsHitsAndMisses() {
+        LoggerCache cache = new LoggerCache("slf4fx", 4);
+        assertSame(cache.getLogger("app", "a.b"), cache.getLogger("app", "a.b"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsEntriesNotLookedUpSinceTheHandPassed() {
+        LoggerCache cache = new LoggerCache("p", 3);
+        cache.getLogger("app", "hot");
+        cache.getLogger("app", "cold1");
+        cache.getLogger("app", "cold2");
+        cache.getLogger("app", "hot");
+        cache.getLogger("app", "new1");
+        cache.getLogger("app", "new2");
+        assertEquals(3, cache.size());
+
+        long misses = cache.getMissCount();
+        cache.getLogger("app", "hot");
+        assertEquals(misses, cache.getMissCount());
+        cache.getLogger("app", "cold1");
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void staysWithinCapacityWhileApplicationsComeAndGo() {
+        LoggerCache cache = new LoggerCache("p", 16);
+        for (int i = 0; i < 1000; i++) {
+            cache.getLogger("app" + i, "category");
+        }
+        assertEquals(16, cache.size());
+        assertEquals(1000, cache.getMissCount());
+    }
+
+    @Test
+    public void startsOverWhenThePrefixChanges() {
+        LoggerCache cache = new LoggerCache("old", 4);
+        cache.getLogger("app", "c");
+        cache.setCategoryPrefix("new");
+        assertEquals(0, cache.size());
+        cache.getLogger("app", "c");
+        assertEquals(2, cache.getMissCount());
+    }
+}
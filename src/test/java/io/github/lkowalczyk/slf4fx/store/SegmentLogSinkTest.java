@@ -0,0 +1,118 @@
+package io.github.lkowalczyk.slf4fx.store;
+
+import io.github.lkowalczyk.slf4fx.LogEntry;
+import io.github.lkowalczyk.slf4fx.message.LogRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SegmentLogSinkTest {
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackRecordsWrittenAcrossARestart() throws IOException {
+        File directory = new File(folder.getRoot(), "segments");
+        SegmentLogSink sink = new SegmentLogSink(directory);
+        sink.open();
+        sink.write(Arrays.asList(entry("app1", "c1", LogRecord.Level.INFO, "first"),
+                entry("app1", "c2", LogRecord.Level.ERROR, "second")));
+        sink.close();
+
+        sink = new SegmentLogSink(directory);
+        sink.open();
+        sink.write(Collections.singletonList(entry("app2", "c1", LogRecord.Level.DEBUG, "third")));
+        sink.close();
+
+        assertEquals(2, Segments.list(directory).length);
+        List<StoredRecord> records = readAll(directory);
+        assertEquals(3, records.size());
+        assertRecord(records.get(0), "app1", "c1", LogRecord.Level.INFO, "first");
+        assertRecord(records.get(1), "app1", "c2", LogRecord.Level.ERROR, "second");
+        assertRecord(records.get(2), "app2", "c1", LogRecord.Level.DEBUG, "third");
+    }
+
+    @Test
+    public void startsASegmentOnTheNextBatchAfterAFailedStart() throws IOException {
+        File directory = new File(folder.getRoot(), "segments");
+        SegmentLogSink sink = new SegmentLogSink(directory);
+        sink.setSegmentSize(SEGMENT_SIZE);
+        sink.open();
+        String large = largeMessage(SEGMENT_SIZE * 2 / 3);
+        sink.write(Collections.singletonList(entry("app", "c", LogRecord.Level.INFO, large)));
+
+        // the next segment cannot be created while a file stands in for the directory
+        File moved = new File(folder.getRoot(), "moved");
+        assertTrue(directory.renameTo(moved));
+        assertTrue(directory.createNewFile());
+        try {
+            sink.write(Collections.singletonList(entry("app", "c", LogRecord.Level.INFO, large)));
+            fail();
+        }
+        catch (IOException e) {
+            // expected
+        }
+        assertTrue(directory.delete());
+        assertTrue(moved.renameTo(directory));
+
+        sink.write(Collections.singletonList(entry("app", "c", LogRecord.Level.WARN, "kept")));
+        sink.close();
+
+        List<StoredRecord> records = readAll(directory);
+        assertEquals(2, records.size());
+        assertEquals(large, records.get(0).getMessage());
+        assertRecord(records.get(1), "app", "c", LogRecord.Level.WARN, "kept");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsWritesBeforeOpen() throws IOException {
+        new SegmentLogSink(folder.getRoot()).write(Collections.singletonList(entry("app", "c",
+                LogRecord.Level.INFO, "m")));
+    }
+
+    private static LogEntry entry(String applicationId, String category, LogRecord.Level level, String message) {
+        return new LogEntry(applicationId, null, new LogRecord(category, level, message));
+    }
+
+    private static String largeMessage(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    private static List<StoredRecord> readAll(File directory) throws IOException {
+        List<StoredRecord> records = new ArrayList<>();
+        SegmentReader reader = new SegmentReader(directory);
+        try {
+            StoredRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return records;
+    }
+
+    private static void assertRecord(StoredRecord record, String applicationId, String category,
+            LogRecord.Level level, String message) {
+        assertEquals(applicationId, record.getApplicationId());
+        assertEquals(category, record.getCategory());
+        assertEquals(level, record.getLevel());
+        assertEquals(message, record.getMessage());
+    }
+}